@@ -34,6 +34,10 @@ android {
         dataBinding = true
         buildConfig= true
     }
+    testOptions {
+        // 本地单元测试中Log、SystemClock等返回默认值，不抛出异常
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -41,6 +45,8 @@ dependencies {
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.constraintlayout)
+    // 列表差异更新和getBindingAdapterPosition需要1.2以上
+    implementation(libs.recyclerview)
     implementation(libs.lifecycle.livedata.ktx)
     implementation(libs.lifecycle.viewmodel.ktx)
     implementation(libs.navigation.fragment)
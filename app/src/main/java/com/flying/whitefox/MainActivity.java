@@ -14,6 +14,7 @@ import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
 
 import com.flying.whitefox.databinding.ActivityMainBinding;
+import com.flying.whitefox.utils.network.HttpClientManager;
 import com.flying.whitefox.utils.permission.PermissionManager;
 
 import java.util.List;
@@ -26,6 +27,9 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // 初始化共享HTTP客户端（磁盘缓存和Picasso）
+        HttpClientManager.getInstance().init(this);
+
         // 设置窗口模式以更好地处理软键盘
         getWindow().setSoftInputMode(WindowManager.LayoutParams.SOFT_INPUT_ADJUST_RESIZE);
 
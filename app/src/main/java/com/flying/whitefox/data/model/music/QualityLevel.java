@@ -56,6 +56,23 @@ public enum QualityLevel {
         return description;
     }
 
+    /**
+     * 根据接口返回的音质字符串查找对应级别
+     *
+     * @param value        音质字符串，如 "exhigh"
+     * @param defaultLevel 找不到时返回的级别
+     */
+    public static QualityLevel fromValue(String value, QualityLevel defaultLevel) {
+        if (value != null) {
+            for (QualityLevel level : values()) {
+                if (level.value.equalsIgnoreCase(value.trim())) {
+                    return level;
+                }
+            }
+        }
+        return defaultLevel;
+    }
+
     @Override
     public String toString() {
         return value;
@@ -0,0 +1,34 @@
+package com.flying.whitefox.data.model.music;
+
+import java.util.List;
+
+/**
+ * 一页搜索结果
+ */
+public class SearchPage {
+    public final String keyword;
+    public final int page;       // 从1开始
+    public final int pageSize;
+    public final List<PlaylistData.Song> songs;
+
+    public SearchPage(String keyword, int page, int pageSize, List<PlaylistData.Song> songs) {
+        this.keyword = keyword;
+        this.page = page;
+        this.pageSize = pageSize;
+        this.songs = songs;
+    }
+
+    /**
+     * 是否可能还有下一页：本页满页时认为还有
+     */
+    public boolean hasMore() {
+        return songs != null && songs.size() >= pageSize;
+    }
+
+    /**
+     * 下一页的游标，没有下一页时返回-1
+     */
+    public int getNextPage() {
+        return hasMore() ? page + 1 : -1;
+    }
+}
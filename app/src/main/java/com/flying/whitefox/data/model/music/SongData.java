@@ -98,6 +98,21 @@ public class SongData implements Serializable {
         this.size = size;
     }
 
+    /**
+     * 获取文件大小（字节）
+     * @return 文件大小，未知或格式错误时返回0
+     */
+    public long getSizeBytes() {
+        if (size == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(size.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     public String getLevel() {
         return level;
     }
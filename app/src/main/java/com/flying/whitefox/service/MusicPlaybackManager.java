@@ -9,11 +9,29 @@ import android.util.Log;
 
 import com.flying.whitefox.data.model.music.PlaylistData;
 import com.flying.whitefox.data.model.music.PlayMode;
-
+import com.flying.whitefox.data.model.music.QualityLevel;
+import com.flying.whitefox.data.model.music.SongData;
+import com.flying.whitefox.utils.PlaylistDiff;
+import com.flying.whitefox.utils.download.OfflineDownloadManager;
+import com.flying.whitefox.utils.lyric.Lyrics;
+import com.flying.whitefox.utils.lyric.LyricsCache;
+import com.flying.whitefox.utils.network.AdaptiveQualityPolicy;
+import com.flying.whitefox.utils.network.AudioCacheProxy;
+import com.flying.whitefox.utils.network.DataSaverManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class MusicPlaybackManager {
     private static final String TAG = "MusicPlaybackManager";
+    private static final int DEFAULT_PREFETCH_DEPTH = 2; // 默认预取后续歌曲数量
 
     private final Context context;
     private MusicPlaybackService musicPlaybackService;
@@ -21,10 +39,28 @@ public class MusicPlaybackManager {
     private boolean isServiceBound = false;
     private PlaybackStateListener playbackStateListener;
     private PlaylistData currentPlaylist;
+    private volatile int currentPlaylistId; // 最近一次请求加载的歌单ID，只接收该歌单的后台刷新结果
     private int currentSongIndex = -1;
+    private volatile Lyrics currentLyrics = Lyrics.EMPTY;
 
     private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
 
+    // 预取：按播放顺序规划的后续歌曲索引，以及对应的链接解析任务（以歌曲ID为键）
+    private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+    private final List<Integer> upcomingIndices = new ArrayList<>();
+    private final Map<String, CompletableFuture<SongData>> prefetchFutures = new HashMap<>();
+    // 无缝播放：播放服务中已准备的下一首对应的索引
+    private int standbyIndex = -1;
+    private QualityLevel standbyQuality = QualityLevel.STANDARD;
+    // 自适应音质：当前歌曲实际使用的音质
+    private final AdaptiveQualityPolicy qualityPolicy = AdaptiveQualityPolicy.getInstance();
+    private QualityLevel currentQuality = QualityLevel.STANDARD;
+    private final DataSaverManager dataSaver = DataSaverManager.getInstance();
+    private final AtomicInteger standbyGeneration = new AtomicInteger(0);
+    // 每次切换当前歌曲加一，较早发起的链接解析完成时不再播放
+    private final AtomicInteger playGeneration = new AtomicInteger(0);
+    private CompletableFuture<SongData> pendingSongUrl;
+
     public boolean isPlaying() {
         return musicPlaybackService != null && musicPlaybackService.isPlaying();
     }
@@ -61,7 +97,7 @@ public class MusicPlaybackManager {
             musicPlaybackService.setPlaybackListener(new MusicPlaybackService.OnPlaybackListener() {
                 @Override
                 public void onCompletion() {
-                    playNextSong();
+                    playNextSong(false);
                     // 确保在播放完成后更新UI状态
                     updatePlaybackState();
                 }
@@ -81,10 +117,26 @@ public class MusicPlaybackManager {
                         updatePlaybackState();
                     }
                 }
+
+                @Override
+                public void onGaplessTransition() {
+                    handleGaplessTransition();
+                }
+
+                @Override
+                public void onSlowPlayback(boolean preparing) {
+                    handleSlowPlayback(preparing);
+                }
             });
 
             // 初始化MusicService
             musicService = musicPlaybackService.getMusicService();
+            // 过期歌单在后台刷新后内容有变化时，按普通加载结果处理
+            musicService.setPlaylistRevalidationListener((playlistId, playlist) -> {
+                if (playlistId == currentPlaylistId) {
+                    applyPlaylist(playlist);
+                }
+            });
 
             Log.d(TAG, "音乐播放服务已连接");
         }
@@ -113,24 +165,73 @@ public class MusicPlaybackManager {
 
     public void loadPlaylist(int playlistId, boolean forceRefresh) {
         if (musicService == null) return;
-        musicService.cancelCurrentRequest();
-        musicService.getPlaylistAsync(playlistId)
-                .thenAccept(playlist -> {
-                    currentPlaylist = playlist;
-                    if (playbackStateListener != null) {
-                        playbackStateListener.onPlaylistUpdated(playlist);
-                    }
-                })
-                .exceptionally(throwable -> {
-                    Log.e(TAG, "加载歌单失败", throwable);
-                    if (playbackStateListener != null) {
-                        playbackStateListener.onError("加载歌单失败: " + throwable.getMessage());
-                    }
-                    return null;
-                });
+        CompletableFuture<PlaylistData> future;
+        if (forceRefresh) {
+            // 强制刷新走条件请求，歌单未变化时返回当前歌单本身
+            future = musicService.refreshPlaylist(playlistId, currentPlaylist).thenApply(playlist -> {
+                if (playlist == null) {
+                    throw new IllegalStateException("刷新歌单失败");
+                }
+                return playlist;
+            });
+        } else {
+            // 同一歌单的并发加载由MusicService合并，这里不再取消进行中的请求
+            future = musicService.getPlaylistAsync(playlistId);
+        }
+        currentPlaylistId = playlistId;
+        future.thenAccept(this::applyPlaylist).exceptionally(throwable -> {
+            Log.e(TAG, "加载歌单失败", throwable);
+            if (playbackStateListener != null) {
+                playbackStateListener.onError("加载歌单失败: " + throwable.getMessage());
+            }
+            return null;
+        });
+    }
+
+    private void applyPlaylist(PlaylistData playlist) {
+        if (playlist == currentPlaylist) {
+            Log.d(TAG, "歌单未变化，跳过预取规划和界面刷新");
+            return;
+        }
+        PlaylistData previous = currentPlaylist;
+        currentPlaylist = playlist;
+        if (previous != null && currentSongIndex >= 0) {
+            // 按歌曲ID把当前歌曲映射到新歌单，歌曲被移除时置为-1，下一首从头开始
+            int remapped = PlaylistDiff.remapIndex(previous.songs, playlist.songs, currentSongIndex);
+            if (remapped != currentSongIndex) {
+                Log.d(TAG, "歌单更新，当前歌曲下标 " + currentSongIndex + " -> " + remapped);
+            }
+            currentSongIndex = remapped;
+        }
+        // 歌单变化后重新规划预取
+        replanPrefetch();
+        if (playbackStateListener != null) {
+            playbackStateListener.onPlaylistUpdated(playlist);
+        }
     }
 
     public void playSong(int songIndex) {
+        playSong(songIndex, true);
+    }
+
+    /**
+     * 播放指定歌曲
+     *
+     * @param songIndex     歌曲索引
+     * @param userInitiated 是否为用户主动操作，是则并行请求所有代理以尽快出声
+     */
+    private void playSong(int songIndex, boolean userInitiated) {
+        playSong(songIndex, userInitiated, null);
+    }
+
+    /**
+     * 播放指定歌曲
+     *
+     * @param songIndex     歌曲索引
+     * @param userInitiated 是否为用户主动操作
+     * @param forcedLevel   指定音质，为null时按网络状况自动选择
+     */
+    private void playSong(int songIndex, boolean userInitiated, QualityLevel forcedLevel) {
         if (currentPlaylist == null ||
                 currentPlaylist.songs == null ||
                 songIndex < 0 ||
@@ -140,21 +241,56 @@ public class MusicPlaybackManager {
         }
 
         currentSongIndex = songIndex;
+        int generation = supersedePendingSongUrl();
+        PlaylistData.Song song = currentPlaylist.songs.get(songIndex);
+        // 已缓存的歌词立即可用，否则在解析到歌曲信息后编译
+        Lyrics cachedLyrics = LyricsCache.getInstance().peek(song.id);
+        currentLyrics = cachedLyrics != null ? cachedLyrics : Lyrics.EMPTY;
 
         if (playbackStateListener != null) {
             playbackStateListener.onSongChanged(songIndex);
         }
 
-        PlaylistData.Song song = currentPlaylist.songs.get(songIndex);
-        musicService.getSongUrl(song.id)
+        // 优先使用预取中的解析任务，没有时按当前网络可承载的音质发起新请求
+        // 省流量模式下限制音质
+        QualityLevel preferredLevel = forcedLevel != null ? forcedLevel : qualityPolicy.selectLevel();
+        QualityLevel level = dataSaver.capQuality(preferredLevel);
+        CompletableFuture<SongData> songUrlFuture = null;
+        if (forcedLevel == null) {
+            // 已完整缓存的歌曲直接从本地播放，无需解析链接
+            SongData cached = findCachedSongData(song);
+            songUrlFuture = cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : takePrefetchedSongUrl(song.id);
+        }
+        if (songUrlFuture == null) {
+            songUrlFuture = musicService.getSongUrl(song.id, level, userInitiated);
+        }
+        advancePrefetchPlan(songIndex);
+        synchronized (this) {
+            pendingSongUrl = songUrlFuture;
+        }
+        songUrlFuture
             .thenAccept(songData -> {
+                if (generation != playGeneration.get()) {
+                    // 解析期间已切换到其他歌曲
+                    Log.d(TAG, "丢弃过期的歌曲链接: " + song.name);
+                    return;
+                }
                 if (songData != null && (songData.status == 200 || 
                     (songData.getUrl() != null && !songData.getUrl().isEmpty()))) {
                     // 成功获取歌曲链接，重置失败计数器
                     consecutiveFailures.set(0);
+                    currentQuality = QualityLevel.fromValue(songData.getLevel(), level);
+                    if (currentQuality != preferredLevel) {
+                        dataSaver.recordQualitySaving(songData.getSizeBytes(), preferredLevel, currentQuality);
+                    }
                     
+                    currentLyrics = LyricsCache.getInstance().get(song.id, songData);
+
                     if (musicPlaybackService != null) {
-                        musicPlaybackService.playSong(songData);
+                        musicPlaybackService.playSong(songData, song.id);
+                        prepareGaplessStandby();
                         updatePlaybackState();
                     } else {
                         Log.e(TAG, "MusicPlaybackService为空");
@@ -171,6 +307,10 @@ public class MusicPlaybackManager {
                 }
             })
             .exceptionally(throwable -> {
+                if (generation != playGeneration.get()) {
+                    // 被新的歌曲取代而取消，不计为失败
+                    return null;
+                }
                 Log.e(TAG, "获取歌曲链接失败", throwable);
                 if (playbackStateListener != null) {
                     playbackStateListener.onError("获取歌曲链接失败: " + throwable.getMessage());
@@ -180,6 +320,25 @@ public class MusicPlaybackManager {
             });
     }
 
+    /**
+     * 当前歌曲即将改变：取消尚未完成的链接解析，并使其回调失效
+     *
+     * @return 新的播放代数
+     */
+    private int supersedePendingSongUrl() {
+        int generation = playGeneration.incrementAndGet();
+        CompletableFuture<SongData> previous;
+        synchronized (this) {
+            previous = pendingSongUrl;
+            pendingSongUrl = null;
+        }
+        if (previous != null && !previous.isDone()) {
+            // 每个调用方持有独立的future，取消只退出自己的订阅，不影响共享的请求
+            previous.cancel(true);
+        }
+        return generation;
+    }
+
     public void togglePlayPause() {
         if (!isServiceBound) return;
 
@@ -198,6 +357,10 @@ public class MusicPlaybackManager {
     }
 
     public void playNextSong() {
+        playNextSong(true);
+    }
+
+    private void playNextSong(boolean userInitiated) {
         if (currentPlaylist == null ||
                 currentPlaylist.songs == null ||
                 currentPlaylist.songs.isEmpty() ||
@@ -205,14 +368,13 @@ public class MusicPlaybackManager {
             return;
         }
 
-        int nextIndex;
-        if (musicPlaybackService != null) {
-            nextIndex = musicPlaybackService.getNextSongIndex(currentSongIndex, currentPlaylist.songs.size());
-        } else {
-            nextIndex = (currentSongIndex + 1) % currentPlaylist.songs.size();
+        // 优先按预取规划的顺序播放，保证随机模式下播放的就是已预取的歌曲
+        int nextIndex = peekPlannedNextIndex();
+        if (nextIndex < 0) {
+            nextIndex = computeNextIndex(currentSongIndex);
         }
 
-        playSong(nextIndex);
+        playSong(nextIndex, userInitiated);
     }
 
     public void playPreviousSong() {
@@ -236,6 +398,8 @@ public class MusicPlaybackManager {
     public void setPlayMode(PlayMode playMode) {
         if (isServiceBound) {
             musicPlaybackService.setPlayMode(playMode);
+            // 播放模式变化后后续顺序也变化，重新规划预取
+            replanPrefetch();
             updatePlaybackState();
         }
     }
@@ -268,7 +432,32 @@ public class MusicPlaybackManager {
         return currentSongIndex;
     }
 
+    /**
+     * 当前歌曲的歌词，没有歌词或尚未解析到时返回{@link Lyrics#EMPTY}
+     */
+    public Lyrics getCurrentLyrics() {
+        return currentLyrics;
+    }
+
+    /**
+     * 当前播放位置（毫秒），未绑定服务时返回0
+     */
+    public int getCurrentPosition() {
+        return isServiceBound ? musicPlaybackService.getCurrentPosition() : 0;
+    }
+
+    /**
+     * 设置预取深度
+     *
+     * @param depth 预取后续歌曲的数量，0表示关闭预取
+     */
+    public void setPrefetchDepth(int depth) {
+        prefetchDepth = Math.max(0, depth);
+        replanPrefetch();
+    }
+
     public void destroy() {
+        cancelPrefetch();
         if (isServiceBound) {
             context.unbindService(serviceConnection);
             isServiceBound = false;
@@ -287,4 +476,275 @@ public class MusicPlaybackManager {
             playSong(currentSongIndex);
         }
     }
+
+    private int computeNextIndex(int fromIndex) {
+        int size = currentPlaylist.songs.size();
+        if (musicPlaybackService != null) {
+            return musicPlaybackService.getNextSongIndex(fromIndex, size);
+        }
+        return (fromIndex + 1) % size;
+    }
+
+    private synchronized int peekPlannedNextIndex() {
+        return upcomingIndices.isEmpty() ? -1 : upcomingIndices.get(0);
+    }
+
+    /**
+     * 取出指定歌曲的预取任务，取出后不会再被重新规划取消
+     */
+    private synchronized CompletableFuture<SongData> takePrefetchedSongUrl(String songId) {
+        CompletableFuture<SongData> future = prefetchFutures.remove(songId);
+        if (future != null && (future.isCancelled() || future.isCompletedExceptionally())) {
+            return null;
+        }
+        if (future != null) {
+            Log.d(TAG, "使用预取的歌曲链接: " + songId);
+        }
+        return future;
+    }
+
+    /**
+     * 播放某首歌后推进预取规划：命中规划则顺延，否则从当前歌曲重新规划
+     */
+    private synchronized void advancePrefetchPlan(int playedIndex) {
+        if (!upcomingIndices.isEmpty() && upcomingIndices.get(0) == playedIndex) {
+            upcomingIndices.remove(0);
+        } else {
+            upcomingIndices.clear();
+        }
+        refillPrefetchPlan();
+    }
+
+    /**
+     * 丢弃当前规划并从当前歌曲重新规划，同时重建无缝播放的备用播放器
+     */
+    private void replanPrefetch() {
+        synchronized (this) {
+            upcomingIndices.clear();
+            refillPrefetchPlan();
+        }
+        if (musicPlaybackService != null) {
+            musicPlaybackService.clearNextSong();
+        }
+        prepareGaplessStandby();
+    }
+
+    /**
+     * 规划中的下一首解析完成后交给播放服务预先准备
+     */
+    private void prepareGaplessStandby() {
+        if (musicPlaybackService == null || !musicPlaybackService.isGaplessEnabled()) {
+            return;
+        }
+        int nextIndex;
+        String nextSongId;
+        CompletableFuture<SongData> future;
+        synchronized (this) {
+            nextIndex = peekPlannedNextIndex();
+            if (nextIndex < 0) {
+                return;
+            }
+            nextSongId = currentPlaylist.songs.get(nextIndex).id;
+            future = prefetchFutures.get(nextSongId);
+        }
+        if (future == null) {
+            return;
+        }
+        int generation = standbyGeneration.incrementAndGet();
+        future.thenAccept(songData -> {
+            // 规划已变化则放弃
+            if (generation != standbyGeneration.get() || musicPlaybackService == null) {
+                return;
+            }
+            // 与播放服务使用同一判断：已离线下载或已完整缓存的歌曲链接为空，但同样可以无缝准备
+            if (MusicPlaybackService.resolvePlaybackUrl(songData, nextSongId) != null) {
+                standbyIndex = nextIndex;
+                standbyQuality = QualityLevel.fromValue(songData.getLevel(), QualityLevel.STANDARD);
+                // 提前编译下一首的歌词，无缝切换时直接从缓存取用
+                LyricsCache.getInstance().get(nextSongId, songData);
+                musicPlaybackService.prepareNextSong(songData, nextSongId);
+            }
+        });
+    }
+
+    /**
+     * 准备或缓冲过慢：降低之后使用的音质；仍在准备中时直接用低一档重新加载当前歌曲
+     */
+    private void handleSlowPlayback(boolean preparing) {
+        QualityLevel previous = currentQuality;
+        QualityLevel lower = qualityPolicy.onSlowPlayback(previous);
+        if (lower == previous) {
+            return;
+        }
+        // 已预取的链接是较高音质，丢弃后按新音质重新预取
+        synchronized (this) {
+            for (CompletableFuture<SongData> future : prefetchFutures.values()) {
+                future.cancel(true);
+            }
+            prefetchFutures.clear();
+        }
+        replanPrefetch();
+        if (preparing && currentSongIndex >= 0) {
+            Log.d(TAG, "准备过慢，以 " + lower.getDescription() + " 重新加载当前歌曲");
+            playSong(currentSongIndex, true, lower);
+        }
+    }
+
+    /**
+     * 播放服务已无缝切换到备用播放器，同步当前索引并准备再下一首
+     */
+    private void handleGaplessTransition() {
+        int index = standbyIndex;
+        standbyIndex = -1;
+        if (currentPlaylist == null || currentPlaylist.songs == null
+                || index < 0 || index >= currentPlaylist.songs.size()) {
+            return;
+        }
+        currentSongIndex = index;
+        supersedePendingSongUrl();
+        currentQuality = standbyQuality;
+        Lyrics cachedLyrics = LyricsCache.getInstance().peek(currentPlaylist.songs.get(index).id);
+        currentLyrics = cachedLyrics != null ? cachedLyrics : Lyrics.EMPTY;
+        consecutiveFailures.set(0);
+        if (playbackStateListener != null) {
+            playbackStateListener.onSongChanged(index);
+        }
+        synchronized (this) {
+            // 当前歌曲的预取任务已用完
+            prefetchFutures.remove(currentPlaylist.songs.get(index).id);
+            advancePrefetchPlan(index);
+        }
+        prepareGaplessStandby();
+        updatePlaybackState();
+    }
+
+    /**
+     * 开启或关闭无缝播放
+     */
+    public void setGaplessEnabled(boolean enabled) {
+        if (musicPlaybackService != null) {
+            musicPlaybackService.setGaplessEnabled(enabled);
+        }
+        if (enabled) {
+            prepareGaplessStandby();
+        }
+    }
+
+    private synchronized void refillPrefetchPlan() {
+        if (currentPlaylist == null || currentPlaylist.songs == null || currentPlaylist.songs.isEmpty()
+                || currentSongIndex < 0 || currentSongIndex >= currentPlaylist.songs.size()
+                || musicService == null) {
+            upcomingIndices.clear();
+            syncPrefetchFutures();
+            return;
+        }
+
+        while (upcomingIndices.size() > prefetchDepth) {
+            upcomingIndices.remove(upcomingIndices.size() - 1);
+        }
+        int lastIndex = upcomingIndices.isEmpty() ? currentSongIndex : upcomingIndices.get(upcomingIndices.size() - 1);
+        while (upcomingIndices.size() < prefetchDepth) {
+            int nextIndex = computeNextIndex(lastIndex);
+            upcomingIndices.add(nextIndex);
+            if (nextIndex == lastIndex) {
+                // 单曲循环或只有一首歌，后续都是同一首
+                break;
+            }
+            lastIndex = nextIndex;
+        }
+        syncPrefetchFutures();
+    }
+
+    /**
+     * 让预取任务与规划保持一致：取消过期任务，补发缺失任务
+     */
+    private synchronized void syncPrefetchFutures() {
+        Map<String, PlaylistData.Song> plannedSongs = new LinkedHashMap<>();
+        for (int index : upcomingIndices) {
+            PlaylistData.Song song = currentPlaylist.songs.get(index);
+            plannedSongs.put(song.id, song);
+        }
+        Set<String> plannedIds = plannedSongs.keySet();
+
+        Iterator<Map.Entry<String, CompletableFuture<SongData>>> iterator = prefetchFutures.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CompletableFuture<SongData>> entry = iterator.next();
+            if (!plannedIds.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
+                iterator.remove();
+                Log.d(TAG, "取消过期的预取: " + entry.getKey());
+            }
+        }
+
+        // 已完整缓存的歌曲无需网络请求
+        List<String> missingIds = new ArrayList<>();
+        for (PlaylistData.Song song : plannedSongs.values()) {
+            if (prefetchFutures.containsKey(song.id)) {
+                continue;
+            }
+            SongData cached = findCachedSongData(song);
+            if (cached != null) {
+                prefetchFutures.put(song.id, CompletableFuture.completedFuture(cached));
+            } else {
+                missingIds.add(song.id);
+            }
+        }
+
+        // 省流量模式下不做推测性预取
+        if (!dataSaver.isPrefetchAllowed()) {
+            Iterator<CompletableFuture<SongData>> pending = prefetchFutures.values().iterator();
+            while (pending.hasNext()) {
+                CompletableFuture<SongData> future = pending.next();
+                if (!future.isDone()) {
+                    future.cancel(true);
+                    pending.remove();
+                }
+            }
+            dataSaver.recordSkippedPrefetch(missingIds.size());
+            return;
+        }
+
+        // 缺失的预取合并为一次批量请求
+        if (!missingIds.isEmpty()) {
+            Log.d(TAG, "预取歌曲链接: " + missingIds);
+            prefetchFutures.putAll(musicService.getSongUrls(missingIds, dataSaver.capQuality(qualityPolicy.selectLevel())));
+        }
+    }
+
+    /**
+     * 查找本地已下载或已完整缓存的音频，缓存优先最高音质
+     *
+     * @return 可直接播放的歌曲信息（播放地址由播放服务从缓存解析），未缓存返回null
+     */
+    private static SongData findCachedSongData(PlaylistData.Song song) {
+        SongData offline = OfflineDownloadManager.getInstance().getOfflineSongData(song.id);
+        if (offline != null) {
+            return offline;
+        }
+        AudioCacheProxy proxy = AudioCacheProxy.getInstance();
+        // 从码率最高的音质开始找
+        QualityLevel[] levels = AdaptiveQualityPolicy.getLevelsByKbps();
+        for (int i = levels.length - 1; i >= 0; i--) {
+            if (proxy.getCachedPlaybackUrl(song.id, levels[i].getValue()) != null) {
+                SongData songData = new SongData();
+                songData.status = 200;
+                songData.name = song.name;
+                songData.ar_name = song.ar_name;
+                songData.al_name = song.al_name;
+                songData.pic = song.pic;
+                songData.level = levels[i].getValue();
+                songData.url = "";
+                return songData;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void cancelPrefetch() {
+        upcomingIndices.clear();
+        for (CompletableFuture<SongData> future : prefetchFutures.values()) {
+            future.cancel(true);
+        }
+        prefetchFutures.clear();
+    }
 }
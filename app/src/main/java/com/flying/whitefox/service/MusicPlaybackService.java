@@ -16,7 +16,10 @@ import android.graphics.BitmapFactory;
 import android.media.MediaPlayer;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -27,7 +30,13 @@ import com.flying.whitefox.MainActivity;
 import com.flying.whitefox.data.model.music.PlayMode;
 import com.flying.whitefox.data.model.music.PlaylistData;
 import com.flying.whitefox.data.model.music.SongData;
+import com.flying.whitefox.utils.download.OfflineDownloadManager;
+import com.flying.whitefox.utils.network.AudioCacheProxy;
+import com.flying.whitefox.utils.network.DataSaverManager;
+import com.flying.whitefox.utils.network.HttpClientManager;
+import com.flying.whitefox.utils.network.ThroughputEstimator;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Random;
 
@@ -48,7 +57,26 @@ public class MusicPlaybackService extends Service {
     private MediaPlayer mediaPlayer;
     private final IBinder binder = new MusicBinder();
     private com.flying.whitefox.data.model.music.PlaylistData.Song currentSong;
+    private String currentUrl; // 当前播放的链接，出错时用于使缓存失效
+
+    // 无缝播放：备用播放器提前准备下一首，并通过setNextMediaPlayer衔接
+    private boolean gaplessEnabled = true;
+    private MediaPlayer nextMediaPlayer;
+    private PlaylistData.Song nextSong;
+    private String nextUrl;
+    private boolean isNextPrepared = false;
+    private long nextSongBytes = 0;
     private boolean isPrepared = false;
+
+    // 自适应音质：监测准备耗时和缓冲卡顿，并用缓冲进度估算音频下载吞吐量
+    private static final long PREPARE_TIMEOUT = 8000; // 超过8秒仍未准备好视为过慢（毫秒）
+    private static final int MAX_REBUFFER_COUNT = 2;  // 一首歌内卡顿达到该次数视为过慢
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable prepareTimeoutRunnable = this::onPrepareTimeout;
+    private long currentSongBytes = 0;
+    private int lastBufferPercent = -1;
+    private long lastBufferTime = 0;
+    private int rebufferCount = 0;
     private OnPlaybackListener playbackListener;
     private PlayMode playMode = PlayMode.SEQUENTIAL; // 默认顺序播放
     private final Random random = new Random();
@@ -70,6 +98,18 @@ public class MusicPlaybackService extends Service {
         void onError(String error);
 
         void onPlayModeChanged(PlayMode playMode);
+
+        /**
+         * 已无缝切换到预先准备的下一首
+         */
+        void onGaplessTransition();
+
+        /**
+         * 准备或缓冲过慢，应降低音质
+         *
+         * @param preparing 是否仍在准备中（尚未开始播放）
+         */
+        void onSlowPlayback(boolean preparing);
     }
 
     public class MusicBinder extends Binder {
@@ -84,10 +124,16 @@ public class MusicPlaybackService extends Service {
     public void onCreate() {
         super.onCreate();
         mediaPlayer = new MediaPlayer();
+        // 初始化共享HTTP客户端
+        HttpClientManager.getInstance().init(this);
         // 初始化MusicService
         musicService = new MusicService();
         musicService.initializeCacheManager(this);
-        setupMediaPlayer();
+        // 启动本地音频缓存代理
+        AudioCacheProxy.getInstance().start(this);
+        // 继续未完成的离线下载
+        OfflineDownloadManager.getInstance().init(this, musicService);
+        setupMediaPlayer(mediaPlayer);
 
         // 初始化通知管理器
         notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
@@ -109,27 +155,41 @@ public class MusicPlaybackService extends Service {
         registerReceiver(notificationReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
     }
 
-    private void setupMediaPlayer() {
-        mediaPlayer.setOnPreparedListener(mp -> {
+    private void setupMediaPlayer(MediaPlayer player) {
+        player.setOnPreparedListener(mp -> {
+            if (mp == nextMediaPlayer) {
+                // 备用播放器准备完成，挂接到当前播放器之后
+                isNextPrepared = true;
+                Log.d(TAG, "下一首已准备完成: " + (nextSong != null ? nextSong.getName() : ""));
+                chainNextMediaPlayer();
+                return;
+            }
+            if (mp != mediaPlayer) {
+                return;
+            }
             isPrepared = true;
+            mainHandler.removeCallbacks(prepareTimeoutRunnable);
             mediaPlayer.start();
             Log.d(TAG, "音乐开始播放");
-            // 使用Handler确保在下一帧更新UI
-            new android.os.Handler().post(() -> {
-                // 显示通知
-                showNotification();
-                // 立即通知播放状态改变
-                if (playbackListener != null) {
-                    playbackListener.onPlayModeChanged(playMode);
-                }
-            });
+            chainNextMediaPlayer();
+            notifyPlaybackStarted();
         });
 
-        mediaPlayer.setOnCompletionListener(mp ->
+        player.setOnCompletionListener(mp ->
 
         {
+            if (mp != mediaPlayer) {
+                return;
+            }
             Log.d(TAG, "音乐播放完成");
-            if (playMode == PlayMode.SINGLE_LOOP) {
+            if (gaplessEnabled && nextMediaPlayer != null && isNextPrepared) {
+                // 备用播放器已由系统无缝启动，交换所有权
+                promoteNextMediaPlayer(false);
+                showNotification();
+                if (playbackListener != null) {
+                    playbackListener.onGaplessTransition();
+                }
+            } else if (playMode == PlayMode.SINGLE_LOOP) {
                 // 单曲循环模式，重新播放当前歌曲
                 if (currentSong != null) {
                     // 注意：这里需要创建一个SongData对象来播放
@@ -145,11 +205,44 @@ public class MusicPlaybackService extends Service {
             }
         });
 
-        mediaPlayer.setOnErrorListener((mp, what, extra) ->
+        player.setOnBufferingUpdateListener((mp, percent) -> {
+            if (mp == mediaPlayer) {
+                onBufferingProgress(percent);
+            }
+        });
+
+        player.setOnInfoListener((mp, what, extra) -> {
+            if (mp == mediaPlayer && what == MediaPlayer.MEDIA_INFO_BUFFERING_START) {
+                rebufferCount++;
+                Log.w(TAG, "播放卡顿，本首第 " + rebufferCount + " 次");
+                if (rebufferCount >= MAX_REBUFFER_COUNT) {
+                    rebufferCount = 0;
+                    if (playbackListener != null) {
+                        playbackListener.onSlowPlayback(false);
+                    }
+                }
+            }
+            return false;
+        });
+
+        player.setOnErrorListener((mp, what, extra) ->
 
         {
+            if (mp == nextMediaPlayer) {
+                // 备用播放器出错不影响当前播放，丢弃即可
+                Log.w(TAG, "下一首准备失败: what=" + what + ", extra=" + extra);
+                if (musicService != null) {
+                    musicService.invalidateSongUrl(AudioCacheProxy.getInstance().getRemoteUrl(nextUrl));
+                }
+                clearNextSong();
+                return true;
+            }
             String error = "音乐播放错误: what=" + what + ", extra=" + extra;
             Log.e(TAG, error);
+            // 缓存的链接可能已失效，下次重新解析
+            if (musicService != null) {
+                musicService.invalidateSongUrl(AudioCacheProxy.getInstance().getRemoteUrl(currentUrl));
+            }
             if (playbackListener != null) {
                 playbackListener.onError(error);
             }
@@ -157,6 +250,220 @@ public class MusicPlaybackService extends Service {
         });
     }
 
+    /**
+     * 开始监测新歌曲的准备耗时和缓冲情况
+     *
+     * @param sizeBytes 音频文件大小，未知时为0
+     */
+    private void startPlaybackMonitor(long sizeBytes) {
+        currentSongBytes = sizeBytes;
+        lastBufferPercent = -1;
+        lastBufferTime = SystemClock.elapsedRealtime();
+        rebufferCount = 0;
+        mainHandler.removeCallbacks(prepareTimeoutRunnable);
+    }
+
+    private void onPrepareTimeout() {
+        if (!isPrepared && playbackListener != null) {
+            Log.w(TAG, "准备播放超过 " + PREPARE_TIMEOUT + "ms");
+            playbackListener.onSlowPlayback(true);
+        }
+    }
+
+    // 根据缓冲进度的增量估算音频下载吞吐量
+    private void onBufferingProgress(int percent) {
+        long now = SystemClock.elapsedRealtime();
+        if (currentSongBytes > 0 && lastBufferPercent >= 0 && percent > lastBufferPercent) {
+            long bytes = currentSongBytes * (percent - lastBufferPercent) / 100;
+            ThroughputEstimator.getInstance().addSample(bytes, now - lastBufferTime);
+            DataSaverManager.getInstance().recordDownloaded(bytes);
+        }
+        if (percent != lastBufferPercent) {
+            lastBufferPercent = percent;
+            lastBufferTime = now;
+        }
+    }
+
+    /**
+     * 实际交给MediaPlayer的地址：已完整缓存的直接走本地缓存，否则经代理边播边缓存
+     *
+     * @return 播放地址，没有可用地址时返回null
+     */
+    static String resolvePlaybackUrl(SongData song, String songId) {
+        if (song == null) {
+            return null;
+        }
+        // 已离线下载的歌曲直接播放本地文件
+        File offlineFile = OfflineDownloadManager.getInstance().getOfflineFile(songId);
+        if (offlineFile != null) {
+            return offlineFile.getAbsolutePath();
+        }
+        AudioCacheProxy proxy = AudioCacheProxy.getInstance();
+        String cachedUrl = proxy.getCachedPlaybackUrl(songId, song.getLevel());
+        if (cachedUrl != null) {
+            return cachedUrl;
+        }
+        String secureUrl = song.getSecureUrl();
+        if (secureUrl == null || secureUrl.isEmpty()) {
+            return null;
+        }
+        return proxy.getProxyUrl(songId, song.getLevel(), secureUrl);
+    }
+
+    /**
+     * 是否直接从远程播放（本地文件和缓存代理不计入吞吐量统计）
+     */
+    private static boolean isRemoteUrl(String playbackUrl) {
+        return playbackUrl.startsWith("http") && !AudioCacheProxy.getInstance().isProxyUrl(playbackUrl);
+    }
+
+    private void notifyPlaybackStarted() {
+        // 使用Handler确保在下一帧更新UI
+        new android.os.Handler(android.os.Looper.getMainLooper()).post(() -> {
+            // 显示通知
+            showNotification();
+            // 立即通知播放状态改变
+            if (playbackListener != null) {
+                playbackListener.onPlayModeChanged(playMode);
+            }
+        });
+    }
+
+    /**
+     * 无缝播放：提前准备下一首歌曲，当前歌曲结束后由系统直接衔接
+     *
+     * @param song 下一首歌曲信息
+     */
+    public synchronized void prepareNextSong(SongData song) {
+        prepareNextSong(song, null);
+    }
+
+    /**
+     * 无缝播放：提前准备下一首歌曲，通过本地缓存代理播放
+     *
+     * @param song   下一首歌曲信息
+     * @param songId 歌曲ID，用作音频缓存键，为null时直接播放远程地址
+     */
+    public synchronized void prepareNextSong(SongData song, String songId) {
+        String playbackUrl = resolvePlaybackUrl(song, songId);
+        if (!gaplessEnabled || playbackUrl == null) {
+            return;
+        }
+        if (nextMediaPlayer != null && playbackUrl.equals(nextUrl)) {
+            return;
+        }
+        clearNextSong();
+
+        MediaPlayer player = new MediaPlayer();
+        setupMediaPlayer(player);
+        try {
+            player.setDataSource(playbackUrl);
+            nextMediaPlayer = player;
+            nextUrl = playbackUrl;
+            nextSong = toNotificationSong(song);
+            // 经代理播放时缓冲进度不代表网络下载，由网络拦截器统计
+            nextSongBytes = isRemoteUrl(playbackUrl) ? song.getSizeBytes() : 0;
+            isNextPrepared = false;
+            player.prepareAsync();
+            Log.d(TAG, "开始准备下一首: " + song.getName());
+        } catch (IOException e) {
+            Log.e(TAG, "准备下一首失败", e);
+            player.release();
+            nextMediaPlayer = null;
+            nextUrl = null;
+            nextSong = null;
+        }
+    }
+
+    /**
+     * 丢弃已准备的下一首（播放队列或播放模式变化时调用）
+     */
+    public synchronized void clearNextSong() {
+        if (nextMediaPlayer == null) {
+            return;
+        }
+        if (isPrepared && isNextPrepared) {
+            try {
+                mediaPlayer.setNextMediaPlayer(null);
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "解除下一首挂接失败", e);
+            }
+        }
+        nextMediaPlayer.release();
+        nextMediaPlayer = null;
+        nextUrl = null;
+        nextSong = null;
+        isNextPrepared = false;
+    }
+
+    public void setGaplessEnabled(boolean enabled) {
+        gaplessEnabled = enabled;
+        if (!enabled) {
+            clearNextSong();
+        }
+    }
+
+    public boolean isGaplessEnabled() {
+        return gaplessEnabled;
+    }
+
+    private synchronized void chainNextMediaPlayer() {
+        if (!isPrepared || !isNextPrepared || nextMediaPlayer == null) {
+            return;
+        }
+        try {
+            mediaPlayer.setNextMediaPlayer(nextMediaPlayer);
+            Log.d(TAG, "已挂接下一首，将无缝播放");
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            Log.w(TAG, "挂接下一首失败", e);
+        }
+    }
+
+    /**
+     * 备用播放器转为当前播放器，释放旧的播放器
+     *
+     * @param start 是否需要手动启动（系统自动衔接时已启动）
+     */
+    private synchronized void promoteNextMediaPlayer(boolean start) {
+        MediaPlayer oldPlayer = mediaPlayer;
+        mediaPlayer = nextMediaPlayer;
+        currentUrl = nextUrl;
+        currentSong = nextSong;
+        isPrepared = true;
+        startPlaybackMonitor(nextSongBytes);
+        nextMediaPlayer = null;
+        nextUrl = null;
+        nextSong = null;
+        isNextPrepared = false;
+
+        if (oldPlayer != null) {
+            if (start) {
+                try {
+                    oldPlayer.setNextMediaPlayer(null);
+                    if (oldPlayer.isPlaying()) {
+                        oldPlayer.stop();
+                    }
+                } catch (IllegalStateException e) {
+                    Log.w(TAG, "停止旧播放器失败", e);
+                }
+            }
+            oldPlayer.release();
+        }
+        if (start) {
+            mediaPlayer.start();
+        }
+        Log.d(TAG, "切换到下一首: " + (currentSong != null ? currentSong.getName() : ""));
+    }
+
+    private static PlaylistData.Song toNotificationSong(SongData song) {
+        // 注意：这里需要创建一个临时的PlaylistData.Song对象来显示通知
+        PlaylistData.Song notificationSong = new PlaylistData.Song();
+        notificationSong.setName(song.getName());
+        notificationSong.setAr_name(song.getAr_name());
+        notificationSong.setPic(song.getPic());
+        return notificationSong;
+    }
+
     public void setPlaybackListener(OnPlaybackListener listener) {
         this.playbackListener = listener;
     }
@@ -174,7 +481,18 @@ public class MusicPlaybackService extends Service {
     }
 
     public void playSong(SongData song) {
-        if (song == null || song.getSecureUrl() == null || song.getSecureUrl().isEmpty()) {
+        playSong(song, null);
+    }
+
+    /**
+     * 播放歌曲，通过本地缓存代理播放，已完整缓存时无需网络
+     *
+     * @param song   歌曲信息
+     * @param songId 歌曲ID，用作音频缓存键，为null时直接播放远程地址
+     */
+    public void playSong(SongData song, String songId) {
+        String playbackUrl = resolvePlaybackUrl(song, songId);
+        if (playbackUrl == null) {
             Log.e(TAG, "歌曲URL为空，无法播放");
             if (playbackListener != null) {
                 playbackListener.onError("歌曲URL为空，无法播放");
@@ -182,6 +500,17 @@ public class MusicPlaybackService extends Service {
             return;
         }
 
+        synchronized (this) {
+            if (gaplessEnabled && nextMediaPlayer != null && isNextPrepared && playbackUrl.equals(nextUrl)) {
+                // 要播放的正是已准备好的下一首，直接切换，无需重新缓冲
+                promoteNextMediaPlayer(true);
+                notifyPlaybackStarted();
+                return;
+            }
+            // 播放队列已变化，丢弃已准备的下一首
+            clearNextSong();
+        }
+
         try {
             if (mediaPlayer.isPlaying()) {
                 mediaPlayer.stop();
@@ -189,19 +518,16 @@ public class MusicPlaybackService extends Service {
 
             mediaPlayer.reset();
             // 保存当前歌曲信息用于通知显示
-            // 注意：这里需要创建一个临时的PlaylistData.Song对象来显示通知
-            com.flying.whitefox.data.model.music.PlaylistData.Song notificationSong = new com.flying.whitefox.data.model.music.PlaylistData.Song();
-            notificationSong.setName(song.getName());
-            notificationSong.setAr_name(song.getAr_name());
-            notificationSong.setPic(song.getPic());
-            currentSong = notificationSong;
+            currentSong = toNotificationSong(song);
 
             isPrepared = false;
 
-            String secureUrl = song.getSecureUrl();
-            mediaPlayer.setDataSource(secureUrl);
+            currentUrl = playbackUrl;
+            mediaPlayer.setDataSource(playbackUrl);
+            startPlaybackMonitor(isRemoteUrl(playbackUrl) ? song.getSizeBytes() : 0);
             mediaPlayer.prepareAsync(); // 异步准备，避免阻塞UI线程
-            Log.d(TAG, "开始准备播放音乐: " + song.getName() + ", URL: " + secureUrl);
+            mainHandler.postDelayed(prepareTimeoutRunnable, PREPARE_TIMEOUT);
+            Log.d(TAG, "开始准备播放音乐: " + song.getName() + ", URL: " + playbackUrl);
         } catch (IOException e) {
             Log.e(TAG, "播放音乐失败", e);
             if (playbackListener != null) {
@@ -227,6 +553,8 @@ public class MusicPlaybackService extends Service {
     }
 
     public void stop() {
+        clearNextSong();
+        mainHandler.removeCallbacks(prepareTimeoutRunnable);
         if (mediaPlayer.isPlaying()) {
             mediaPlayer.stop();
             isPrepared = false;
@@ -453,6 +781,8 @@ public class MusicPlaybackService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        mainHandler.removeCallbacks(prepareTimeoutRunnable);
+        AudioCacheProxy.getInstance().stop();
         if (mediaPlayer != null) {
             if (mediaPlayer.isPlaying()) {
                 mediaPlayer.stop();
@@ -460,6 +790,10 @@ public class MusicPlaybackService extends Service {
             mediaPlayer.release();
             mediaPlayer = null;
         }
+        if (nextMediaPlayer != null) {
+            nextMediaPlayer.release();
+            nextMediaPlayer = null;
+        }
 
         // 取消注册广播接收器
         try {
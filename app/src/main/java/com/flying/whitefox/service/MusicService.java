@@ -3,66 +3,133 @@ package com.flying.whitefox.service;
 
 
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import com.flying.whitefox.data.model.music.PlaylistData;
 import com.flying.whitefox.data.model.music.QualityLevel;
+import com.flying.whitefox.data.model.music.SearchPage;
 import com.flying.whitefox.data.model.music.SongData;
+import com.flying.whitefox.utils.PlaylistDetailParser;
+import com.flying.whitefox.utils.PlaylistDiff;
 import com.flying.whitefox.utils.cache.PlaylistCacheManager;
+import com.flying.whitefox.utils.cache.SongUrlCacheManager;
 import com.flying.whitefox.utils.config.RequestURLConfig;
+import com.flying.whitefox.utils.network.DataSaverManager;
+import com.flying.whitefox.utils.network.EndpointHealthTracker;
+import com.flying.whitefox.utils.network.HttpClientManager;
+import com.flying.whitefox.utils.network.RequestRegistry;
+import com.flying.whitefox.utils.network.RetryScheduler;
+import com.flying.whitefox.utils.network.SingleFlight;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ScheduledFuture;
 
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.HashingSource;
+import okio.Okio;
 
 public class MusicService {
     private static final String TAG = "MusicService";
     private static final String PROXY_URL = RequestURLConfig.getVipNeteaseMusic;
-    private static final OkHttpClient http_client = new OkHttpClient();
-    private static final int MAX_RETRIES = 3; // 进一步减少最大重试次数
-    private static final long RETRY_DELAY = 3000; // 减少重试延迟（毫秒）3秒
-
-    // 用于存储当前正在进行的请求，以便可以取消
-    private static Call currentCall;
-    // 用于跟踪请求ID，防止重复处理
-    private static final AtomicInteger requestIdCounter = new AtomicInteger(0);
-    private static volatile int currentRequestId = -1;
+    private static final long DEFAULT_HEDGE_DELAY = 800; // 首个代理超过该时间未返回则并行请求备用代理（毫秒）
+    private volatile long hedgeDelay = DEFAULT_HEDGE_DELAY;
+    private static final PlaylistData NOT_MODIFIED = new PlaylistData(); // 条件请求确认歌单未变化时的内部标记
+    private static final int BATCH_SIZE = 20; // 批量获取歌曲链接时每个请求包含的ID数
+    private static final int MAX_PARALLEL_SINGLE_REQUESTS = 4; // 不支持批量时并行的单曲请求数上限
+    private static final String SEARCH_URL = "https://api.bzqll.com/music/tencent/search";
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20; // 搜索每页默认数量
+    // 代理返回的批量结果无法按ID对应时置为false，之后直接走单曲请求
+    private volatile boolean batchSupported = true;
+
+    // 按用途登记进行中的请求，调用方只取消自己的请求
+    private final RequestRegistry requestRegistry = new RequestRegistry();
+
+    // 请求合并：同一歌单、同一歌曲+音质的并发请求共享一个进行中的Future
+    private final SingleFlight<Integer, PlaylistData> playlistFlight = new SingleFlight<>();
+    private final SingleFlight<String, SongData> songUrlFlight = new SingleFlight<>();
+    // 进行中的单曲对冲请求，按歌曲+音质索引，用户点播加入时据此取消对冲延迟
+    private final Map<String, HedgedRequest> activeHedges = new ConcurrentHashMap<>();
+
+    // 正在后台重新验证的歌单，避免重复刷新
+    private final Set<Integer> revalidatingPlaylists = ConcurrentHashMap.newKeySet();
+    private volatile PlaylistRevalidationListener revalidationListener;
 
     private PlaylistCacheManager cacheManager; // 缓存管理器
+    private SongUrlCacheManager songUrlCache = new SongUrlCacheManager(null); // 歌曲链接缓存，未初始化前仅使用内存
 
 
     public void initializeCacheManager(android.content.Context context) {
-        cacheManager = new PlaylistCacheManager(context);
+        cacheManager = PlaylistCacheManager.getInstance(context);
+        songUrlCache = new SongUrlCacheManager(context);
+        EndpointHealthTracker.getInstance().init(context);
     }
 
 
+    /**
+     * 后台重新验证过期歌单后，内容确有变化时的回调
+     */
+    public interface PlaylistRevalidationListener {
+        /**
+         * 在网络回调线程上调用
+         *
+         * @param playlistId 歌单ID
+         * @param playlist   刷新后的歌单
+         */
+        void onPlaylistRevalidated(int playlistId, PlaylistData playlist);
+    }
+
+    public void setPlaylistRevalidationListener(PlaylistRevalidationListener listener) {
+        this.revalidationListener = listener;
+    }
+
     /**
      * 异步获取歌单信息
+     * 缓存未过期时直接返回；已过期时立即返回旧歌单并在后台条件刷新，
+     * 刷新结果与旧歌单不同时通过{@link PlaylistRevalidationListener}通知；没有缓存时从网络加载
      * @param playlistId 歌单ID
      */
     public CompletableFuture<PlaylistData> getPlaylistAsync(int playlistId) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                PlaylistData cachedPlaylist = LoadPlayListByCache();
-                if (cachedPlaylist != null) {
-                    Log.d(TAG, "从缓存加载歌单成功: " + cachedPlaylist.name + ", 歌曲数量: " + (cachedPlaylist.songs != null ? cachedPlaylist.songs.size() : 0));
-                    return cachedPlaylist;
+                PlaylistCacheManager.Lookup cached = lookupCache(playlistId);
+                if (cached != null && cached.playlist.songs != null && !cached.playlist.songs.isEmpty()) {
+                    if (cached.stale) {
+                        Log.d(TAG, "缓存歌单已过期，先使用旧歌单并在后台刷新: " + cached.playlist.name);
+                        revalidateInBackground(playlistId, cached.playlist);
+                    } else {
+                        Log.d(TAG, "从缓存加载歌单成功: " + cached.playlist.name + ", 歌曲数量: " + cached.playlist.songs.size());
+                    }
+                    return cached.playlist;
                 }
                 Future<PlaylistData> future = getPlaylist(playlistId);
                 PlaylistData result = future.get();
@@ -74,20 +141,15 @@ public class MusicService {
             }
         }).thenCompose(playlist -> {
             if (playlist != null && playlist.songs != null && !playlist.songs.isEmpty()) {
+                // 网络结果在请求成功时已连同校验信息写入缓存，这里不再重复序列化
                 Log.d(TAG, "歌单验证通过: " + playlist.name + ", 歌曲数量: " + playlist.songs.size());
-                // 保存到缓存
-                synchronized (this) {
-                    if (cacheManager != null) {
-                        cacheManager.savePlaylist(playlist);
-                    }
-                }
                 return CompletableFuture.completedFuture(playlist);
             } else {
                 Log.w(TAG, "获取到的歌单为空或没有歌曲，playlist=" + playlist + 
                     ", songs=" + (playlist != null ? playlist.songs : "null"));
                 
                 // 尝试从缓存加载
-                PlaylistData cachedPlaylist = LoadPlayListByCache();
+                PlaylistData cachedPlaylist = LoadPlayListByCache(playlistId);
                 if (cachedPlaylist != null) {
                     Log.d(TAG, "网络加载失败，从缓存加载歌单");
                     return CompletableFuture.completedFuture(cachedPlaylist);
@@ -99,12 +161,58 @@ public class MusicService {
         });
     }
 
+    private PlaylistCacheManager.Lookup lookupCache(int playlistId) {
+        if (cacheManager == null) {
+            Log.w(TAG, "CacheManager未初始化，无法从缓存加载歌单");
+            return null;
+        }
+        try {
+            synchronized (this) {
+                return cacheManager.lookup(playlistId);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "从缓存加载歌单时发生错误", e);
+            return null;
+        }
+    }
+
+    /**
+     * 在后台条件刷新过期歌单，同一歌单同时只有一次刷新；省流量模式下刷新攒批后再发出
+     *
+     * @param playlistId 歌单ID
+     * @param stale      当前展示的过期歌单
+     */
+    private void revalidateInBackground(int playlistId, PlaylistData stale) {
+        if (!revalidatingPlaylists.add(playlistId)) {
+            return;
+        }
+        DataSaverManager.getInstance().enqueueRefresh("playlist_" + playlistId, () ->
+                refreshPlaylist(playlistId, stale).whenComplete((playlist, throwable) -> {
+                    revalidatingPlaylists.remove(playlistId);
+                    if (throwable != null || playlist == null) {
+                        Log.w(TAG, "后台刷新歌单失败，继续使用旧歌单: " + playlistId, throwable);
+                        return;
+                    }
+                    // 304、内容哈希相同或解析结果一致时都不通知，界面无需刷新
+                    if (PlaylistDiff.isSamePlaylist(stale, playlist)) {
+                        Log.d(TAG, "后台刷新完成，歌单没有变化: " + playlistId);
+                        return;
+                    }
+                    Log.d(TAG, "后台刷新完成，歌单已更新: " + playlist.name);
+                    PlaylistRevalidationListener listener = revalidationListener;
+                    if (listener != null) {
+                        listener.onPlaylistRevalidated(playlistId, playlist);
+                    }
+                }));
+    }
+
     /**
      * 从缓存中加载歌单
      *
+     * @param playlistId 歌单ID
      * @return 缓存的歌单数据，如果不存在或已过期则返回null
      */
-    public PlaylistData LoadPlayListByCache() {
+    public PlaylistData LoadPlayListByCache(int playlistId) {
         // 检查cacheManager是否已初始化
         if (cacheManager == null) {
             Log.w(TAG, "CacheManager未初始化，无法从缓存加载歌单");
@@ -117,11 +225,11 @@ public class MusicService {
             // 判断是否在主线程
             if (isMainThread()) {
                 // 主线程直接访问（不上锁）
-                cachedPlaylist = cacheManager.getPlaylist();
+                cachedPlaylist = cacheManager.getPlaylist(playlistId);
             } else {
                 // 非主线程访问（上锁）
                 synchronized (this) {
-                    cachedPlaylist = cacheManager.getPlaylist();
+                    cachedPlaylist = cacheManager.getPlaylist(playlistId);
                 }
             }
 
@@ -138,6 +246,11 @@ public class MusicService {
         return cachedPlaylist;
     }
 
+    // 使用全局共享的HTTP客户端，复用连接池和缓存
+    private static OkHttpClient getHttpClient() {
+        return HttpClientManager.getInstance().getClient();
+    }
+
     // 辅助方法：判断是否在主线程
     private boolean isMainThread() {
         return Thread.currentThread() == Looper.getMainLooper().getThread();
@@ -149,21 +262,60 @@ public class MusicService {
      *
      * @param playlistId 歌单ID
      */
-    public Future<PlaylistData> getPlaylist(int playlistId) {
-        // 生成新的请求ID
-        int requestId = requestIdCounter.incrementAndGet();
-        currentRequestId = requestId;
-        
-        Log.d(TAG, "开始新请求，ID: " + requestId);
-        
-        // 取消之前的请求（如果有的话）
-        if (currentCall != null && !currentCall.isCanceled()) {
-            currentCall.cancel();
-            Log.d(TAG, "取消了之前的请求");
+    public CompletableFuture<PlaylistData> getPlaylist(int playlistId) {
+        // 同一歌单已有请求进行中时直接共享，不再重复请求，也不会让先前的调用方拿到null
+        return playlistFlight.execute(playlistId, () -> startPlaylistRequest(playlistId, null));
+    }
+
+    /**
+     * 条件刷新歌单：带上次响应的ETag/Last-Modified请求，上游不提供时比较响应内容的哈希；
+     * 歌单未变化时不解析、不写缓存
+     *
+     * @param playlistId 歌单ID
+     * @param current    当前使用的歌单
+     * @return 有变化时返回新歌单；未变化时返回current本身，调用方可据此跳过界面刷新；失败返回null
+     */
+    public CompletableFuture<PlaylistData> refreshPlaylist(int playlistId, PlaylistData current) {
+        PlaylistCacheManager.Validators validators = null;
+        synchronized (this) {
+            if (cacheManager != null && cacheManager.isImported(playlistId)) {
+                // 导入的歌单无法从接口刷新，直接使用缓存
+                PlaylistData imported = cacheManager.getPlaylist(playlistId, true);
+                return CompletableFuture.completedFuture(
+                        current != null && current.id == playlistId ? current : imported);
+            }
+            if (current != null && current.id == playlistId && cacheManager != null) {
+                validators = cacheManager.getValidators(playlistId);
+            }
         }
+        return startPlaylistRequest(playlistId, validators)
+                .thenApply(playlist -> playlist == NOT_MODIFIED ? current : playlist);
+    }
+
+    private CompletableFuture<PlaylistData> startPlaylistRequest(int playlistId,
+                                                                 PlaylistCacheManager.Validators validators) {
+        // 每个请求有自己的取消令牌，不同歌单的加载互不取消
+        RequestRegistry.CancellationToken token = requestRegistry.newToken(RequestRegistry.RequestGroup.PLAYLIST,
+                String.valueOf(playlistId));
+        Log.d(TAG, "开始新请求，歌单ID: " + playlistId);
+
+        CompletableFuture<PlaylistData> future = newTrackedFuture(token);
+        getPlaylistWithRetry(playlistId, 0, future, token, validators);
+        return future;
+    }
 
-        CompletableFuture<PlaylistData> future = new CompletableFuture<>();
-        getPlaylistWithRetry(playlistId, 0, future, requestId);
+    /**
+     * 创建与取消令牌绑定的Future：令牌取消时返回null，Future被取消时取消令牌，结束后释放令牌
+     */
+    private <T> CompletableFuture<T> newTrackedFuture(RequestRegistry.CancellationToken token) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        token.onCancel(() -> future.complete(null));
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                token.cancel();
+            }
+            requestRegistry.release(token);
+        });
         return future;
     }
 
@@ -172,12 +324,15 @@ public class MusicService {
      * @param playlistId 歌单ID
      * @param retryCount 当前重试次数
      * @param future     结果Future
-     * @param requestId  请求ID
+     * @param token      取消令牌
+     * @param validators 缓存歌单的校验信息，不为null时发起条件请求
      */
-    private  void getPlaylistWithRetry(int playlistId, int retryCount, CompletableFuture<PlaylistData> future, int requestId) {
-        // 检查请求是否仍然有效
-        if (requestId != currentRequestId) {
-            Log.d(TAG, "请求已过期，ID: " + requestId + ", 当前ID: " + currentRequestId);
+    private  void getPlaylistWithRetry(int playlistId, int retryCount, CompletableFuture<PlaylistData> future,
+                                       RequestRegistry.CancellationToken token,
+                                       PlaylistCacheManager.Validators validators) {
+        // 检查请求是否已被取消
+        if (token.isCancelled()) {
+            Log.d(TAG, "请求已取消，歌单ID: " + playlistId);
             future.complete(null);
             return;
         }
@@ -188,220 +343,202 @@ public class MusicService {
         Log.i(TAG, "getPlaylist url: " + url + " (attempt " + (retryCount + 1) + ")");
 
         // 构建带有必要请求头的请求
-        Request request = new Request.Builder()
+        Request.Builder requestBuilder = new Request.Builder()
                 .url(url)
                 .addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
-                .addHeader("Referer", "https://music.163.com")
-                .build();
+                .addHeader("Referer", "https://music.163.com");
+        if (validators != null && validators.etag != null) {
+            requestBuilder.addHeader("If-None-Match", validators.etag);
+        }
+        if (validators != null && validators.lastModified != null) {
+            requestBuilder.addHeader("If-Modified-Since", validators.lastModified);
+        }
+        Request request = requestBuilder.build();
 
-        currentCall = http_client.newCall(request);
-        currentCall.enqueue(new Callback() {
+        Call playlistCall = getHttpClient().newCall(request);
+        if (!token.register(playlistCall)) {
+            future.complete(null);
+            return;
+        }
+        playlistCall.enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                // 再次检查请求是否仍然有效
-                if (requestId != currentRequestId) {
-                    Log.d(TAG, "请求已过期(onFailure)，ID: " + requestId + ", 当前ID: " + currentRequestId);
-                    future.complete(null);
-                    return;
-                }
-                
-                if (call.isCanceled()) {
+                if (call.isCanceled() || token.isCancelled()) {
                     Log.d(TAG, "请求被取消");
                     future.complete(null);
                     return;
                 }
 
                 Log.e(TAG, "获取歌单信息失败", e);
-                if (retryCount < MAX_RETRIES) {
-                    retryGetPlaylist(playlistId, retryCount, future, requestId);
-                } else {
-                    future.complete(null);
-                }
+                retryGetPlaylist(playlistId, retryCount, future, token, validators, RetryScheduler.ErrorType.NETWORK);
             }
 
             @Override
             public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                // 检查请求是否仍然有效
-                if (requestId != currentRequestId) {
-                    Log.d(TAG, "请求已过期(onResponse)，ID: " + requestId + ", 当前ID: " + currentRequestId);
+                if (call.isCanceled() || token.isCancelled()) {
+                    Log.d(TAG, "请求被取消");
+                    response.close();
                     future.complete(null);
                     return;
                 }
-                
-                if (call.isCanceled()) {
-                    Log.d(TAG, "请求被取消");
-                    future.complete(null);
+
+                if (response.code() == 304 && validators != null) {
+                    response.close();
+                    onPlaylistNotModified(playlistId);
+                    future.complete(NOT_MODIFIED);
                     return;
                 }
 
                 if (!response.isSuccessful()) {
                     Log.e(TAG, "获取歌单信息失败: " + response.code());
-                    if (retryCount < MAX_RETRIES) {
-                        retryGetPlaylist(playlistId, retryCount, future, requestId);
-                    } else {
-                        future.complete(null);
-                    }
+                    response.close();
+                    retryGetPlaylist(playlistId, retryCount, future, token, validators,
+                            RetryScheduler.classifyHttpCode(response.code()));
                     return;
                 }
 
-                try {
-                    String responseData = response.body().string();
-                    JSONObject jsonObject = new JSONObject(responseData);
-
-                    // 检查返回的数据结构
-                    Log.d(TAG, "Response data: " + responseData.substring(0, Math.min(200, responseData.length())) + "...");
+                try (ResponseBody body = response.body()) {
+                    String etag = response.header("ETag");
+                    String lastModified = response.header("Last-Modified");
+                    String contentHash = null;
+                    PlaylistDetailParser.Result result;
+                    if (etag != null || lastModified != null) {
+                        // 流式解析，不再把整个响应读成字符串
+                        result = PlaylistDetailParser.parse(body.charStream(), playlistId);
+                    } else if (validators != null && validators.contentHash != null) {
+                        // 上游没有校验头但有上次的哈希：读完响应计算哈希，与缓存一致时跳过解析
+                        HashingSource hashingSource = HashingSource.sha256(body.source());
+                        Buffer buffer = new Buffer();
+                        buffer.writeAll(hashingSource);
+                        contentHash = hashingSource.hash().hex();
+                        if (contentHash.equals(validators.contentHash)) {
+                            onPlaylistNotModified(playlistId);
+                            future.complete(NOT_MODIFIED);
+                            return;
+                        }
+                        result = PlaylistDetailParser.parse(
+                                new InputStreamReader(buffer.inputStream(), StandardCharsets.UTF_8), playlistId);
+                    } else {
+                        // 没有可比较的哈希：边流式解析边计算哈希，保存供下次比较
+                        HashingSource hashingSource = HashingSource.sha256(body.source());
+                        BufferedSource hashedSource = Okio.buffer(hashingSource);
+                        result = PlaylistDetailParser.parse(new InputStreamReader(
+                                uncloseable(hashedSource.inputStream()), StandardCharsets.UTF_8), playlistId);
+                        // JSON之后可能还有未读的字节，读完使哈希覆盖整个响应，与缓冲计算的结果一致
+                        hashedSource.readAll(Okio.blackhole());
+                        contentHash = hashingSource.hash().hex();
+                    }
 
                     // 检查是否服务器繁忙
-                    String msg = jsonObject.optString("msg", "");
-                    int code = jsonObject.optInt("code", 200);
-                    if (code == -447 || (msg.contains("服务器忙碌") || msg.contains("请稍后再试"))) {
+                    if (result.isServerBusy()) {
                         Log.w(TAG, "服务器忙碌，准备重试...");
-                        if (retryCount < MAX_RETRIES) {
-                            retryGetPlaylist(playlistId, retryCount, future, requestId);
-                        } else {
-                            future.complete(null);
-                        }
+                        retryGetPlaylist(playlistId, retryCount, future, token, validators,
+                                RetryScheduler.ErrorType.SERVER_BUSY);
                         return;
                     }
 
-                    PlaylistData playlistData = new PlaylistData();
-                    playlistData.id = playlistId;
-
-                    // 解析歌单详情 - 修复嵌套结构访问
-                    JSONObject resultObj = jsonObject.optJSONObject("result");
-                    if (resultObj != null) {
-                        JSONObject playlistObj = resultObj.optJSONObject("playlist");
-                        if (playlistObj == null) {
-                            // 如果playlist不存在，直接使用result对象
-                            playlistObj = resultObj;
-                        }
-
-                        // 获取歌单ID和名称
-                        playlistData.id = playlistObj.optInt("id", playlistId);
-                        playlistData.name = playlistObj.optString("name", "未知歌单");
-
-                        // 解析歌曲列表
-                        JSONArray tracksArray = playlistObj.optJSONArray("tracks");
-                        if (tracksArray != null && tracksArray.length() > 0) {
-                            List<PlaylistData.Song> songs = new ArrayList<>();
-
-                            for (int i = 0; i < tracksArray.length(); i++) {
-                                JSONObject trackObj = tracksArray.getJSONObject(i);
-                                PlaylistData.Song song = new PlaylistData.Song();
-                                song.id = trackObj.optString("id", "0");
-                                song.name = trackObj.optString("name", "未知歌曲");
-
-                                // 解析艺术家信息 - 支持多种格式
-                                String artistName = "未知歌手";
-                                JSONArray artistsArray = trackObj.optJSONArray("ar");
-                                if (artistsArray != null && artistsArray.length() > 0) {
-                                    JSONObject artistObj = artistsArray.getJSONObject(0);
-                                    artistName = artistObj.optString("name", "未知歌手");
-                                } else {
-                                    artistsArray = trackObj.optJSONArray("artists");
-                                    if (artistsArray != null && artistsArray.length() > 0) {
-                                        JSONObject artistObj = artistsArray.getJSONObject(0);
-                                        artistName = artistObj.optString("name", "未知歌手");
-                                    }
-                                }
-                                song.ar_name = artistName;
-
-                                // 解析专辑信息 - 支持多种格式
-                                String albumName = "未知专辑";
-                                String albumPic = "https://p2.music.126.net/6y-UleORITEDbvrOLV0Q8A==/5639395138885805.jpg";
-
-                                JSONObject albumObj = trackObj.optJSONObject("al");
-                                if (albumObj == null) {
-                                    albumObj = trackObj.optJSONObject("album");
-                                }
-
-                                if (albumObj != null) {
-                                    albumName = albumObj.optString("name", "未知专辑");
-                                    albumPic = albumObj.optString("picUrl", albumPic);
-                                }
-
-                                song.al_name = albumName;
-                                song.pic = albumPic;
-
-                                songs.add(song);
-                            }
-
-                            playlistData.songs = songs;
-                            Log.d(TAG, "成功解析歌单: " + playlistData.name + ", 包含 " + songs.size() + " 首歌曲");
-                            future.complete(playlistData);
-                        } else {
-                            Log.e(TAG, "解析歌单信息失败，tracks数组为空或不存在");
-                            if (retryCount < MAX_RETRIES) {
-                                retryGetPlaylist(playlistId, retryCount, future, requestId);
-                            } else {
-                                future.complete(null);
-                            }
-                        }
-                    } else {
+                    if (!result.hasResult) {
                         Log.e(TAG, "解析歌单信息失败，result对象为空");
-                        if (retryCount < MAX_RETRIES) {
-                            retryGetPlaylist(playlistId, retryCount, future, requestId);
-                        } else {
-                            future.complete(null);
-                        }
+                        retryGetPlaylist(playlistId, retryCount, future, token, validators, RetryScheduler.ErrorType.PARSE);
+                        return;
                     }
-                } catch (JSONException e) {
-                    Log.e(TAG, "解析歌单信息失败", e);
-                    if (retryCount < MAX_RETRIES) {
-                        retryGetPlaylist(playlistId, retryCount, future, requestId);
+
+                    PlaylistData playlistData = result.playlist;
+                    if (playlistData.songs != null && !playlistData.songs.isEmpty()) {
+                        Log.d(TAG, "成功解析歌单: " + playlistData.name + ", 包含 " + playlistData.songs.size()
+                                + " 首歌曲, 解析耗时 " + result.elapsedMillis + "ms");
+                        savePlaylistToCache(playlistId, playlistData,
+                                new PlaylistCacheManager.Validators(etag, lastModified, contentHash));
+                        future.complete(playlistData);
                     } else {
+                        Log.e(TAG, "解析歌单信息失败，tracks数组为空或不存在");
+                        retryGetPlaylist(playlistId, retryCount, future, token, validators, RetryScheduler.ErrorType.PARSE);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (call.isCanceled()) {
+                        Log.d(TAG, "请求被取消");
                         future.complete(null);
+                        return;
                     }
+                    Log.e(TAG, "解析歌单信息失败", e);
+                    retryGetPlaylist(playlistId, retryCount, future, token, validators, RetryScheduler.ErrorType.PARSE);
                 }
             }
         });
     }
 
     /**
-     * 重试获取歌单
+     * 解析器读完后会关闭输入流，包装后保留底层数据源，以便读完剩余字节计算哈希
+     */
+    private static InputStream uncloseable(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 重试获取歌单，由RetryScheduler按错误类型决定是否重试及退避时间
      * @param playlistId 歌单ID
      * @param retryCount 当前重试次数
      * @param future     结果Future
-     * @param requestId  请求ID
+     * @param token      取消令牌
+     * @param validators 条件请求的校验信息
+     * @param errorType  本次失败的错误类型
      */
-    private  void retryGetPlaylist(int playlistId, int retryCount, CompletableFuture<PlaylistData> future, int requestId) {
-        // 检查请求是否仍然有效
-        if (requestId != currentRequestId) {
-            Log.d(TAG, "请求已过期(retry)，ID: " + requestId + ", 当前ID: " + currentRequestId);
+    private  void retryGetPlaylist(int playlistId, int retryCount, CompletableFuture<PlaylistData> future,
+                                   RequestRegistry.CancellationToken token,
+                                   PlaylistCacheManager.Validators validators, RetryScheduler.ErrorType errorType) {
+        // 已取消的请求不再重试
+        if (token.isCancelled()) {
+            errorType = RetryScheduler.ErrorType.CANCELLED;
+        }
+
+        // 在后台调度线程上退避重试，不占用主线程
+        boolean scheduled = RetryScheduler.getInstance().scheduleRetry(errorType, retryCount, () -> {
+            // 检查future是否已经结束
+            if (!future.isDone()) {
+                getPlaylistWithRetry(playlistId, retryCount + 1, future, token, validators);
+            }
+        });
+        if (!scheduled) {
             future.complete(null);
-            return;
         }
-        
-        Log.d(TAG, "将在 " + RETRY_DELAY + "ms 后进行第 " + (retryCount + 1) + " 次重试，请求ID: " + requestId);
+    }
 
-        // 使用Handler来处理延迟和重试，确保在主线程中调度
-        android.os.Handler handler = new android.os.Handler(android.os.Looper.getMainLooper());
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                // 再次检查请求是否仍然有效
-                if (requestId != currentRequestId) {
-                    Log.d(TAG, "请求已过期(延迟后)，ID: " + requestId + ", 当前ID: " + currentRequestId);
-                    future.complete(null);
-                    return;
-                }
-                
-                // 检查future是否已经被取消
-                if (!future.isCancelled() && !future.isDone()) {
-                    getPlaylistWithRetry(playlistId, retryCount + 1, future, requestId);
-                }
+    private void onPlaylistNotModified(int playlistId) {
+        Log.d(TAG, "歌单未变化，跳过解析和缓存写入，歌单ID: " + playlistId);
+        synchronized (this) {
+            if (cacheManager != null) {
+                cacheManager.markRevalidated(playlistId);
             }
-        }, RETRY_DELAY);
+        }
+    }
+
+    private void savePlaylistToCache(int playlistId, PlaylistData playlist, PlaylistCacheManager.Validators validators) {
+        synchronized (this) {
+            if (cacheManager != null) {
+                cacheManager.savePlaylist(playlistId, playlist, validators);
+            }
+        }
     }
 
     /**
-     * 取消当前正在进行的请求
+     * 取消所有正在进行的歌单请求
      */
     public  void cancelCurrentRequest() {
-        if (currentCall != null && !currentCall.isCanceled()) {
-            currentCall.cancel();
-            Log.d(TAG, "已取消当前请求");
-        }
+        cancelRequests(RequestRegistry.RequestGroup.PLAYLIST);
+    }
+
+    /**
+     * 取消某一用途的所有请求，其他用途的请求不受影响
+     *
+     * @param group 用途分组
+     */
+    public void cancelRequests(RequestRegistry.RequestGroup group) {
+        requestRegistry.cancelGroup(group);
+        Log.d(TAG, "已取消请求分组: " + group);
     }
 
     /**
@@ -411,41 +548,356 @@ public class MusicService {
      * @param level  音质级别
      */
     public  CompletableFuture<SongData> getSongUrl(String songId, QualityLevel level) {
+        return getSongUrl(songId, level, false);
+    }
+
+    /**
+     * 获取歌曲播放链接
+     *
+     * @param songId        网易云歌曲 ID
+     * @param level         音质级别
+     * @param userInitiated 是否为用户主动点播，是则所有代理同时发起请求
+     */
+    public  CompletableFuture<SongData> getSongUrl(String songId, QualityLevel level, boolean userInitiated) {
+        return getSongUrl(songId, level, userInitiated, RequestRegistry.RequestGroup.SONG_URL);
+    }
+
+    /**
+     * 预取歌曲播放链接，请求归入预取分组，可通过cancelRequests单独取消
+     *
+     * @param songId 网易云歌曲 ID
+     * @param level  音质级别
+     */
+    public  CompletableFuture<SongData> prefetchSongUrl(String songId, QualityLevel level) {
+        return getSongUrl(songId, level, false, RequestRegistry.RequestGroup.PREFETCH);
+    }
+
+    private  CompletableFuture<SongData> getSongUrl(String songId, QualityLevel level, boolean userInitiated,
+                                                    RequestRegistry.RequestGroup group) {
         CompletableFuture<SongData> future = new CompletableFuture<>();
         if (songId.isEmpty() || songId.equals("0")) {
             future.complete(null);
             return future;
         }
-        // 尝试多个代理URL
-        String[] proxyUrls = {
-                PROXY_URL + "?ids=" + songId + "&level=" + level.getValue() + "&type=json",
-                RequestURLConfig.getMusicAnalysisAggregation + "?id=" + songId + "&media=netease&type=url",
-        };
 
-        tryNextProxyUrl(proxyUrls, 0, future, songId, level.getValue());
+        // 优先使用未过期的缓存链接，重复播放时无需网络请求
+        SongData cached = songUrlCache.get(songId, level);
+        if (cached != null) {
+            Log.d(TAG, "从缓存获取歌曲链接: " + songId + ", 音质: " + level.getValue());
+            future.complete(cached);
+            return future;
+        }
+
+        // 同一歌曲和音质已有请求进行中时共享结果；共享请求的令牌不归入任何分组，
+        // 每个调用方用自己分组的令牌，取消预取不会取消同一请求上的点播
+        String key = songId + "_" + level.getValue();
+        RequestRegistry.CancellationToken token = requestRegistry.newToken(group, key);
+        CompletableFuture<SongData> result = newTrackedFuture(token);
+        CompletableFuture<SongData> shared = songUrlFlight.execute(key, () -> resolveSongUrl(songId, level,
+                userInitiated, requestRegistry.newSharedToken(group, key)));
+        if (userInitiated) {
+            // 用户点播加入了按对冲延迟进行的预取请求时，立即发起其余代理
+            HedgedRequest hedgedRequest = activeHedges.get(key);
+            if (hedgedRequest != null) {
+                launchRemainingAttempts(hedgedRequest);
+            }
+        }
+        shared.whenComplete((songData, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(songData);
+            }
+        });
+        // 本调用方结束（包括令牌取消）时退出共享请求，所有调用方都退出后才取消底层请求
+        result.whenComplete((songData, throwable) -> {
+            if (!shared.isDone()) {
+                shared.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<SongData> resolveSongUrl(String songId, QualityLevel level, boolean userInitiated,
+                                                       RequestRegistry.CancellationToken token) {
+        String key = songId + "_" + level.getValue();
+        CompletableFuture<SongData> future = newTrackedFuture(token);
+        future.thenAccept(songData -> songUrlCache.put(songId, level, songData));
+
+        // 候选代理URL，ID包含"-"时追加去掉"-"后的候选
+        List<String> proxyUrls = new ArrayList<>(buildProxyUrls(songId, level));
+        if (songId.contains("-")) {
+            proxyUrls.addAll(buildProxyUrls(songId.replace("-", ""), level));
+        }
+        // 按接口健康度排序，熔断中的接口不参与（全部熔断时除外）
+        proxyUrls = EndpointHealthTracker.getInstance().selectCandidates(proxyUrls);
+
+        HedgedRequest hedgedRequest = new HedgedRequest(proxyUrls, future, token, userInitiated ? 0 : hedgeDelay);
+        activeHedges.put(key, hedgedRequest);
+        // 胜出或全部失败后取消剩余请求
+        future.whenComplete((songData, throwable) -> {
+            activeHedges.remove(key, hedgedRequest);
+            hedgedRequest.cancelAll();
+        });
+        if (userInitiated) {
+            for (int i = 0; i < proxyUrls.size(); i++) {
+                launchHedgedAttempt(hedgedRequest);
+            }
+        } else {
+            launchHedgedAttempt(hedgedRequest);
+        }
         return future;
     }
 
+    /**
+     * 批量获取歌曲播放链接
+     * 已缓存或进行中的歌曲直接复用，其余歌曲按BATCH_SIZE分组用一个请求获取多个ID；
+     * 代理不支持批量时退化为有限并发的单曲请求
+     *
+     * @param songIds 歌曲ID列表
+     * @param level   音质级别
+     * @return 歌曲ID到播放链接Future的映射，顺序与传入顺序一致
+     */
+    public Map<String, CompletableFuture<SongData>> getSongUrls(List<String> songIds, QualityLevel level) {
+        Map<String, CompletableFuture<SongData>> futures = new LinkedHashMap<>();
+        Map<String, CompletableFuture<SongData>> pending = new LinkedHashMap<>();
+        for (String songId : songIds) {
+            if (songId == null || futures.containsKey(songId)) {
+                continue;
+            }
+            if (songId.isEmpty() || songId.equals("0")) {
+                futures.put(songId, CompletableFuture.completedFuture(null));
+                continue;
+            }
+            SongData cached = songUrlCache.get(songId, level);
+            if (cached != null) {
+                futures.put(songId, CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            // 只有尚未进行中的歌曲才会进入批量请求，其余共享已有请求的结果
+            futures.put(songId, songUrlFlight.execute(songId + "_" + level.getValue(), () -> {
+                CompletableFuture<SongData> future = new CompletableFuture<>();
+                future.thenAccept(songData -> songUrlCache.put(songId, level, songData));
+                pending.put(songId, future);
+                return future;
+            }));
+        }
+
+        if (!pending.isEmpty()) {
+            Log.d(TAG, "批量获取歌曲链接: " + pending.size() + " 首，共请求 " + futures.size() + " 首");
+            List<String> pendingIds = new ArrayList<>(pending.keySet());
+            if (batchSupported && pendingIds.size() > 1) {
+                for (int i = 0; i < pendingIds.size(); i += BATCH_SIZE) {
+                    List<String> batch = pendingIds.subList(i, Math.min(i + BATCH_SIZE, pendingIds.size()));
+                    Map<String, CompletableFuture<SongData>> batchFutures = new LinkedHashMap<>();
+                    for (String songId : batch) {
+                        batchFutures.put(songId, pending.get(songId));
+                    }
+                    requestSongUrlBatch(batchFutures, level);
+                }
+            } else {
+                resolveSongUrlsIndividually(pending, level);
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * 用一个请求获取多首歌曲的链接，响应中缺失的歌曲改用单曲请求
+     */
+    private void requestSongUrlBatch(Map<String, CompletableFuture<SongData>> batchFutures, QualityLevel level) {
+        String ids = String.join(",", batchFutures.keySet());
+        RequestRegistry.CancellationToken token = requestRegistry.newToken(RequestRegistry.RequestGroup.PREFETCH,
+                "batch_" + batchFutures.size());
+        String url = PROXY_URL + "?ids=" + ids + "&level=" + level.getValue() + "&type=json";
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
+                .addHeader("Referer", "https://music.163.com")
+                .build();
+
+        Call call = getHttpClient().newCall(request);
+        if (!token.register(call)) {
+            requestRegistry.release(token);
+            resolveSongUrlsIndividually(batchFutures, level);
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                requestRegistry.release(token);
+                Log.e(TAG, "批量获取歌曲链接失败，改用单曲请求", e);
+                resolveSongUrlsIndividually(batchFutures, level);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                requestRegistry.release(token);
+                Map<String, SongData> results = null;
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful() && body != null) {
+                        results = parseBatchSongData(body.string());
+                    } else {
+                        Log.e(TAG, "批量获取歌曲链接失败, code: " + response.code());
+                    }
+                } catch (JSONException | IOException e) {
+                    Log.e(TAG, "解析批量歌曲信息失败", e);
+                }
+
+                if (results == null) {
+                    if (response.isSuccessful()) {
+                        // 响应无法按ID对应，说明代理不支持批量
+                        batchSupported = false;
+                        Log.w(TAG, "代理不支持批量获取歌曲链接，之后改用单曲请求");
+                    }
+                    resolveSongUrlsIndividually(batchFutures, level);
+                    return;
+                }
+
+                Map<String, CompletableFuture<SongData>> missing = new LinkedHashMap<>();
+                for (Map.Entry<String, CompletableFuture<SongData>> entry : batchFutures.entrySet()) {
+                    SongData songData = results.get(entry.getKey());
+                    if (songData != null) {
+                        entry.getValue().complete(songData);
+                    } else {
+                        missing.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                Log.d(TAG, "批量获取歌曲链接完成: " + (batchFutures.size() - missing.size()) + "/" + batchFutures.size());
+                if (!missing.isEmpty()) {
+                    resolveSongUrlsIndividually(missing, level);
+                }
+            }
+        });
+    }
+
+    /**
+     * 有限并发地逐首获取歌曲链接，结果写入对应的Future
+     */
+    private void resolveSongUrlsIndividually(Map<String, CompletableFuture<SongData>> targets, QualityLevel level) {
+        Deque<Map.Entry<String, CompletableFuture<SongData>>> queue = new ArrayDeque<>(targets.entrySet());
+        int workers = Math.min(MAX_PARALLEL_SINGLE_REQUESTS, queue.size());
+        for (int i = 0; i < workers; i++) {
+            resolveNextQueued(queue, level);
+        }
+    }
+
+    private void resolveNextQueued(Deque<Map.Entry<String, CompletableFuture<SongData>>> queue, QualityLevel level) {
+        Map.Entry<String, CompletableFuture<SongData>> entry;
+        synchronized (queue) {
+            // 跳过调用方已取消的歌曲
+            do {
+                entry = queue.pollFirst();
+            } while (entry != null && entry.getValue().isDone());
+        }
+        if (entry == null) {
+            return;
+        }
+        CompletableFuture<SongData> target = entry.getValue();
+        CompletableFuture<SongData> single = resolveSongUrl(entry.getKey(), level, false,
+                requestRegistry.newToken(RequestRegistry.RequestGroup.PREFETCH, entry.getKey() + "_" + level.getValue()));
+        target.whenComplete((songData, throwable) -> {
+            if (target.isCancelled()) {
+                single.cancel(false);
+            }
+        });
+        single.whenComplete((songData, throwable) -> {
+            if (throwable != null) {
+                target.completeExceptionally(throwable);
+            } else {
+                target.complete(songData);
+            }
+            resolveNextQueued(queue, level);
+        });
+    }
+
+    /**
+     * 使播放链接对应的缓存失效，在播放器报错时调用
+     *
+     * @param url 播放出错的链接
+     */
+    public void invalidateSongUrl(String url) {
+        songUrlCache.invalidateByUrl(url);
+    }
+
+    /**
+     * 设置对冲延迟：首个代理在此时间内未返回则并行请求下一个代理
+     *
+     * @param delayMillis 延迟（毫秒）
+     */
+    public void setHedgeDelay(long delayMillis) {
+        hedgeDelay = Math.max(0, delayMillis);
+    }
+
     // 添加一个重载方法，使用默认音质
     public  CompletableFuture<SongData> getSongUrl(String songId) {
         return getSongUrl(songId, QualityLevel.STANDARD);
     }
 
-    private  void tryNextProxyUrl(String[] proxyUrls, int index, CompletableFuture<SongData> future,
-                                        String songId, String level) {
-        if (index >= proxyUrls.length) {
-            if (songId.contains("-")) {
-                songId = songId.replace("-", "");
-                tryNextProxyUrl(proxyUrls, 0, future, songId, level);
-                return;
-            }
+    private static List<String> buildProxyUrls(String songId, QualityLevel level) {
+        List<String> urls = new ArrayList<>();
+        urls.add(PROXY_URL + "?ids=" + songId + "&level=" + level.getValue() + "&type=json");
+        urls.add(RequestURLConfig.getMusicAnalysisAggregation + "?id=" + songId + "&media=netease&type=url");
+        return urls;
+    }
 
-            Log.e(TAG, "所有代理URL都尝试失败");
-            future.complete(null);
-            return;
+    /**
+     * 一次对冲请求的状态：已发起的请求、下一个待发起的候选以及挂起的对冲定时任务
+     */
+    private static class HedgedRequest {
+        final List<String> urls;
+        final CompletableFuture<SongData> future;
+        final RequestRegistry.CancellationToken token;
+        long hedgeDelay; // 用户点播加入后改为0
+        final List<Call> calls = new ArrayList<>();
+        int nextIndex = 0;
+        int failedCount = 0;
+        int retryCount = 0;
+        RetryScheduler.ErrorType lastErrorType = RetryScheduler.ErrorType.NETWORK;
+        ScheduledFuture<?> pendingHedge;
+
+        HedgedRequest(List<String> urls, CompletableFuture<SongData> future,
+                      RequestRegistry.CancellationToken token, long hedgeDelay) {
+            this.urls = urls;
+            this.future = future;
+            this.token = token;
+            this.hedgeDelay = hedgeDelay;
+        }
+
+        synchronized void cancelAll() {
+            if (pendingHedge != null) {
+                pendingHedge.cancel(false);
+                pendingHedge = null;
+            }
+            for (Call call : calls) {
+                if (!call.isCanceled()) {
+                    call.cancel();
+                }
+            }
         }
+    }
 
-        String url = proxyUrls[index];
+    /**
+     * 发起下一个候选代理请求，并在对冲延迟后预约再下一个
+     */
+    private void launchHedgedAttempt(HedgedRequest hedgedRequest) {
+        int index;
+        String url;
+        synchronized (hedgedRequest) {
+            if (hedgedRequest.future.isDone() || hedgedRequest.nextIndex >= hedgedRequest.urls.size()) {
+                return;
+            }
+            index = hedgedRequest.nextIndex++;
+            url = hedgedRequest.urls.get(index);
+            if (hedgedRequest.pendingHedge != null) {
+                hedgedRequest.pendingHedge.cancel(false);
+                hedgedRequest.pendingHedge = null;
+            }
+            if (hedgedRequest.hedgeDelay > 0 && hedgedRequest.nextIndex < hedgedRequest.urls.size()) {
+                hedgedRequest.pendingHedge = RetryScheduler.getInstance().schedule(
+                        () -> launchHedgedAttempt(hedgedRequest), hedgedRequest.hedgeDelay);
+            }
+        }
         Log.i(TAG, "尝试获取歌曲链接 URL[" + index + "]: " + url);
 
         Request request = new Request.Builder()
@@ -454,21 +906,35 @@ public class MusicService {
                 .addHeader("Referer", "https://music.163.com")
                 .build();
 
-        String finalSongId = songId;
-        http_client.newCall(request).enqueue(new Callback() {
+        EndpointHealthTracker healthTracker = EndpointHealthTracker.getInstance();
+        Call call = getHttpClient().newCall(request);
+        if (!hedgedRequest.token.register(call)) {
+            healthTracker.recordCancelled(url);
+            return;
+        }
+        synchronized (hedgedRequest) {
+            hedgedRequest.calls.add(call);
+        }
+        long startTime = SystemClock.elapsedRealtime();
+        call.enqueue(new Callback() {
             @Override
             public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                if (call.isCanceled()) {
+                    healthTracker.recordCancelled(url);
+                    return;
+                }
                 Log.e(TAG, "获取歌曲链接失败 URL[" + index + "]: " + url, e);
-                // 尝试下一个URL
-                tryNextProxyUrl(proxyUrls, index + 1, future, finalSongId, level);
+                healthTracker.recordFailure(url);
+                onHedgedAttemptFailed(hedgedRequest, RetryScheduler.ErrorType.NETWORK);
             }
 
             @Override
             public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
                 if (!response.isSuccessful()) {
                     Log.e(TAG, "获取歌曲链接失败 URL[" + index + "]: " + url + ", code: " + response.code());
-                    // 尝试下一个URL
-                    tryNextProxyUrl(proxyUrls, index + 1, future, finalSongId, level);
+                    response.close();
+                    healthTracker.recordFailure(url);
+                    onHedgedAttemptFailed(hedgedRequest, RetryScheduler.classifyHttpCode(response.code()));
                     return;
                 }
 
@@ -477,87 +943,251 @@ public class MusicService {
                     String responseData = response.body().string();
                     Log.d(TAG, "Song URL response data[" + index + "]: " + responseData);
 
-                    // 检查响应是否有效
-                    if (responseData.contains("\"status\": 400") || responseData.contains("信息获取不完整")) {
-                        Log.e(TAG, "获取歌曲链接失败，信息不完整 URL[" + index + "]");
-                        // 尝试下一个URL
-                        tryNextProxyUrl(proxyUrls, index + 1, future, finalSongId, level);
-                        return;
-                    }
-
-                    JSONObject jsonObject = new JSONObject(responseData);
-                    SongData songData = new SongData();
-
-                    // 根据不同的响应格式解析数据
-                    if (jsonObject.has("data") && jsonObject.get("data") instanceof JSONArray) {
-                        // 处理api.bzqll.com格式的响应
-                        JSONArray dataArray = jsonObject.getJSONArray("data");
-                        if (dataArray.length() > 0) {
-                            JSONObject dataObj = dataArray.getJSONObject(0);
-                            songData.status = 200;
-                            songData.name = dataObj.optString("songname", "");
-                            songData.ar_name = dataObj.optString("artistname", "");
-                            songData.al_name = dataObj.optString("albumname", "");
-                            songData.pic = dataObj.optString("pic", "");
-                            songData.url = dataObj.optString("url", "");
+                    SongData songData = parseSongData(responseData);
+                    if (songData != null) {
+                        healthTracker.recordSuccess(url, SystemClock.elapsedRealtime() - startTime);
+                        if (hedgedRequest.future.complete(songData)) {
+                            Log.d(TAG, "歌曲链接获取成功 URL[" + index + "]");
                         }
-                    } else {
-                        // 处理标准格式响应
-                        songData.status = jsonObject.optInt("status", 0);
-                        songData.msg = jsonObject.optString("msg", "");
-                        songData.al_name = jsonObject.optString("al_name", "");
-                        songData.ar_name = jsonObject.optString("ar_name", "");
-                        songData.level = jsonObject.optString("level", "");
-                        songData.lyric = jsonObject.optString("lyric", "");
-                        songData.name = jsonObject.optString("name", "");
-                        songData.pic = jsonObject.optString("pic", "");
-                        songData.size = jsonObject.optString("size", "");
-                        songData.tlyric = jsonObject.optString("tlyric", "");
-                        songData.url = jsonObject.optString("url", "");
-                    }
-
-                    if (songData.status == 200 || (songData.url != null && !songData.url.isEmpty())) {
-                        future.complete(songData);
                     } else {
                         Log.e(TAG, "解析歌曲信息失败 URL[" + index + "]");
-                        // 尝试下一个URL
-                        tryNextProxyUrl(proxyUrls, index + 1, future, finalSongId, level);
+                        healthTracker.recordFailure(url);
+                        onHedgedAttemptFailed(hedgedRequest, RetryScheduler.ErrorType.PARSE);
+                    }
+                } catch (JSONException | IOException e) {
+                    if (call.isCanceled()) {
+                        healthTracker.recordCancelled(url);
+                        return;
                     }
-                } catch (JSONException e) {
                     Log.e(TAG, "解析歌曲信息失败 URL[" + index + "]", e);
-                    // 尝试下一个URL
-                    tryNextProxyUrl(proxyUrls, index + 1, future, finalSongId, level);
+                    healthTracker.recordFailure(url);
+                    onHedgedAttemptFailed(hedgedRequest, e instanceof JSONException
+                            ? RetryScheduler.ErrorType.PARSE : RetryScheduler.ErrorType.NETWORK);
+                }
+            }
+        });
+    }
+
+    /**
+     * 取消对冲延迟并立即发起所有尚未发起的候选，之后的整轮重试也同时发起
+     */
+    private void launchRemainingAttempts(HedgedRequest hedgedRequest) {
+        int remaining;
+        synchronized (hedgedRequest) {
+            if (hedgedRequest.hedgeDelay == 0) {
+                return;
+            }
+            hedgedRequest.hedgeDelay = 0;
+            if (hedgedRequest.pendingHedge != null) {
+                hedgedRequest.pendingHedge.cancel(false);
+                hedgedRequest.pendingHedge = null;
+            }
+            remaining = hedgedRequest.urls.size() - hedgedRequest.nextIndex;
+        }
+        Log.d(TAG, "用户点播加入进行中的请求，立即发起其余 " + remaining + " 个代理");
+        for (int i = 0; i < remaining; i++) {
+            launchHedgedAttempt(hedgedRequest);
+        }
+    }
+
+    /**
+     * 某个候选失败：还有未发起的候选则立即发起，全部失败则返回null
+     */
+    private void onHedgedAttemptFailed(HedgedRequest hedgedRequest, RetryScheduler.ErrorType errorType) {
+        boolean launchNext;
+        synchronized (hedgedRequest) {
+            hedgedRequest.failedCount++;
+            hedgedRequest.lastErrorType = errorType;
+            launchNext = hedgedRequest.nextIndex < hedgedRequest.urls.size();
+            if (!launchNext && hedgedRequest.failedCount >= hedgedRequest.urls.size()) {
+                Log.e(TAG, "所有代理URL都尝试失败");
+                retryHedgedRequest(hedgedRequest);
+                return;
+            }
+        }
+        if (launchNext) {
+            launchHedgedAttempt(hedgedRequest);
+        }
+    }
+
+    /**
+     * 所有候选都失败后，按最后一次的错误类型退避重试整轮请求
+     */
+    private void retryHedgedRequest(HedgedRequest hedgedRequest) {
+        int attempt = hedgedRequest.retryCount;
+        boolean scheduled = RetryScheduler.getInstance().scheduleRetry(hedgedRequest.lastErrorType, attempt, () -> {
+            int launches;
+            synchronized (hedgedRequest) {
+                if (hedgedRequest.future.isDone()) {
+                    return;
                 }
+                hedgedRequest.retryCount = attempt + 1;
+                hedgedRequest.nextIndex = 0;
+                hedgedRequest.failedCount = 0;
+                hedgedRequest.calls.clear();
+                launches = hedgedRequest.hedgeDelay > 0 ? 1 : hedgedRequest.urls.size();
+            }
+            for (int i = 0; i < launches; i++) {
+                launchHedgedAttempt(hedgedRequest);
             }
         });
+        if (!scheduled) {
+            hedgedRequest.future.complete(null);
+        }
     }
 
     /**
-     * 搜索歌曲
+     * 解析批量请求返回的歌曲信息
+     *
+     * @param responseData 响应内容
+     * @return 歌曲ID到歌曲信息的映射，响应不是按ID区分的列表时返回null
+     */
+    private static Map<String, SongData> parseBatchSongData(String responseData) throws JSONException {
+        String trimmed = responseData.trim();
+        JSONArray items;
+        if (trimmed.startsWith("[")) {
+            items = new JSONArray(trimmed);
+        } else {
+            JSONObject jsonObject = new JSONObject(trimmed);
+            items = jsonObject.optJSONArray("data");
+        }
+        if (items == null) {
+            return null;
+        }
+
+        Map<String, SongData> results = new LinkedHashMap<>();
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject item = items.optJSONObject(i);
+            if (item == null) {
+                continue;
+            }
+            String id = item.optString("id", "");
+            if (id.isEmpty()) {
+                // 没有ID无法和请求对应
+                return null;
+            }
+            SongData songData = readSongData(item);
+            if (songData.status == 200 || (songData.url != null && !songData.url.isEmpty())) {
+                results.put(id, songData);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 解析代理返回的歌曲信息
+     *
+     * @param responseData 响应内容
+     * @return 有效的歌曲信息，无效时返回null
+     */
+    private static SongData parseSongData(String responseData) throws JSONException {
+        // 检查响应是否有效
+        if (responseData.contains("\"status\": 400") || responseData.contains("信息获取不完整")) {
+            return null;
+        }
+
+        JSONObject jsonObject = new JSONObject(responseData);
+        SongData songData = new SongData();
+
+        // 根据不同的响应格式解析数据
+        if (jsonObject.has("data") && jsonObject.get("data") instanceof JSONArray) {
+            // 处理api.bzqll.com格式的响应
+            JSONArray dataArray = jsonObject.getJSONArray("data");
+            if (dataArray.length() > 0) {
+                JSONObject dataObj = dataArray.getJSONObject(0);
+                songData.status = 200;
+                songData.name = dataObj.optString("songname", "");
+                songData.ar_name = dataObj.optString("artistname", "");
+                songData.al_name = dataObj.optString("albumname", "");
+                songData.pic = dataObj.optString("pic", "");
+                songData.url = dataObj.optString("url", "");
+            }
+        } else {
+            // 处理标准格式响应
+            songData = readSongData(jsonObject);
+        }
+
+        if (songData.status == 200 || (songData.url != null && !songData.url.isEmpty())) {
+            return songData;
+        }
+        return null;
+    }
+
+    // 标准格式的单首歌曲信息
+    private static SongData readSongData(JSONObject jsonObject) {
+        SongData songData = new SongData();
+        songData.status = jsonObject.optInt("status", 0);
+        songData.msg = jsonObject.optString("msg", "");
+        songData.al_name = jsonObject.optString("al_name", "");
+        songData.ar_name = jsonObject.optString("ar_name", "");
+        songData.level = jsonObject.optString("level", "");
+        songData.lyric = jsonObject.optString("lyric", "");
+        songData.name = jsonObject.optString("name", "");
+        songData.pic = jsonObject.optString("pic", "");
+        songData.size = jsonObject.optString("size", "");
+        songData.tlyric = jsonObject.optString("tlyric", "");
+        songData.url = jsonObject.optString("url", "");
+        return songData;
+    }
+
+    /**
+     * 搜索歌曲（第一页）
      *
      * @param keyword 搜索关键词
      */
     public Future<List<PlaylistData.Song>> searchSong(String keyword) {
-        CompletableFuture<List<PlaylistData.Song>> future = new CompletableFuture<>();
+        return searchSong(keyword, 1, DEFAULT_SEARCH_PAGE_SIZE)
+                .thenApply(searchPage -> searchPage != null ? searchPage.songs : null);
+    }
 
-        String url = "https://api.bzqll.com/music/tencent/search?key=" + keyword + "&limit=20&type=song";
+    /**
+     * 分页搜索歌曲，请求归入搜索分组，可通过cancelRequests取消被新输入取代的搜索
+     *
+     * @param keyword  搜索关键词
+     * @param page     页码，从1开始
+     * @param pageSize 每页数量
+     * @return 该页结果，失败或被取消时为null
+     */
+    public CompletableFuture<SearchPage> searchSong(String keyword, int page, int pageSize) {
+        RequestRegistry.CancellationToken token = requestRegistry.newToken(RequestRegistry.RequestGroup.SEARCH,
+                keyword + "#" + page);
+        CompletableFuture<SearchPage> future = newTrackedFuture(token);
+        searchSongWithRetry(keyword, page, pageSize, 0, future, token);
+        return future;
+    }
+
+    private void searchSongWithRetry(String keyword, int page, int pageSize, int retryCount,
+                                     CompletableFuture<SearchPage> future, RequestRegistry.CancellationToken token) {
+        HttpUrl url = HttpUrl.get(SEARCH_URL).newBuilder()
+                .addQueryParameter("key", keyword)
+                .addQueryParameter("limit", String.valueOf(pageSize))
+                .addQueryParameter("page", String.valueOf(page))
+                .addQueryParameter("type", "song")
+                .build();
         Request request = new Request.Builder()
                 .url(url)
                 .addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
                 .build();
 
-        http_client.newCall(request).enqueue(new Callback() {
+        Call searchCall = getHttpClient().newCall(request);
+        if (!token.register(searchCall)) {
+            return;
+        }
+        searchCall.enqueue(new Callback() {
             @Override
             public void onFailure(@NonNull Call call, IOException e) {
                 Log.e(TAG, "搜索歌曲失败", e);
-                future.complete(null);
+                retrySearchSong(keyword, page, pageSize, retryCount, future, token, call.isCanceled()
+                        ? RetryScheduler.ErrorType.CANCELLED : RetryScheduler.ErrorType.NETWORK);
             }
 
             @Override
             public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
                 if (!response.isSuccessful()) {
                     Log.e(TAG, "搜索歌曲失败: " + response.code());
-                    future.complete(null);
+                    response.close();
+                    retrySearchSong(keyword, page, pageSize, retryCount, future, token,
+                            RetryScheduler.classifyHttpCode(response.code()));
                     return;
                 }
 
@@ -565,8 +1195,6 @@ public class MusicService {
                     assert response.body() != null;
                     String responseData = response.body().string();
                     JSONObject jsonObject = new JSONObject(responseData);
-                    // 检查返回的数据结构
-                    Log.d(TAG, "Search response data: " + responseData);
 
                     JSONArray songsArray = jsonObject.optJSONArray("data");
                     List<PlaylistData.Song> songs = new ArrayList<>();
@@ -583,16 +1211,28 @@ public class MusicService {
                             songs.add(song);
                         }
                     }
+                    Log.d(TAG, "搜索 \"" + keyword + "\" 第" + page + "页: " + songs.size() + " 首");
 
-                    future.complete(songs);
+                    future.complete(new SearchPage(keyword, page, pageSize, songs));
                 } catch (JSONException e) {
                     Log.e(TAG, "解析搜索结果失败", e);
-                    future.complete(null);
+                    retrySearchSong(keyword, page, pageSize, retryCount, future, token, RetryScheduler.ErrorType.PARSE);
                 }
             }
         });
+    }
 
-        return future;
+    private void retrySearchSong(String keyword, int page, int pageSize, int retryCount,
+                                 CompletableFuture<SearchPage> future, RequestRegistry.CancellationToken token,
+                                 RetryScheduler.ErrorType errorType) {
+        boolean scheduled = RetryScheduler.getInstance().scheduleRetry(errorType, retryCount, () -> {
+            if (!future.isDone()) {
+                searchSongWithRetry(keyword, page, pageSize, retryCount + 1, future, token);
+            }
+        });
+        if (!scheduled) {
+            future.complete(null);
+        }
     }
 
 
@@ -28,6 +28,10 @@ import com.flying.whitefox.data.model.music.PlaylistData;
 import com.flying.whitefox.data.model.music.SongData;
 import com.flying.whitefox.service.MusicPlaybackManager;
 import com.flying.whitefox.data.model.music.PlayMode;
+import com.flying.whitefox.utils.PlaylistDiff;
+import com.flying.whitefox.utils.cache.PlaylistCacheManager;
+import com.flying.whitefox.utils.lyric.Lyrics;
+import com.flying.whitefox.utils.network.DataSaverManager;
 import com.squareup.picasso.Picasso;
 
 import java.util.Locale;
@@ -62,9 +66,12 @@ public class DashboardFragment extends Fragment {
     private Button btnRefresh; // 刷新按钮
     private Button btnImportPlaylist; // 导入歌单按钮
     private ImageButton btnOpenPlaylist; // 播放列表入口按钮
+    private TextView lyricLine;
+    private TextView lyricTranslation;
 
     // 数据
     private PlaylistData playlist;
+    private int currentPlaylistId = PlaylistId; // 当前显示的歌单，导入歌单后切换为导入的歌单
     private int currentSongIndex = 0;
     private boolean isFragmentFirstLoaded = true; // 标记Fragment是否首次加载
 
@@ -83,6 +90,23 @@ public class DashboardFragment extends Fragment {
         }
     };
 
+    // 歌词同步：播放时每100毫秒按播放位置二分查找当前行，行变化时才刷新文字
+    private static final long LYRIC_SYNC_INTERVAL = 100;
+    private Lyrics displayedLyrics;
+    private int displayedLyricIndex = -1;
+    private final Runnable lyricRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (musicPlaybackManager == null) {
+                return;
+            }
+            updateLyric(musicPlaybackManager.getCurrentPosition());
+            if (musicPlaybackManager.isPlaying()) {
+                progressHandler.postDelayed(this, LYRIC_SYNC_INTERVAL);
+            }
+        }
+    };
+
     // Activity Result Launchers
     private ActivityResultLauncher<Intent> importPlaylistLauncher;
     private ActivityResultLauncher<Intent> playlistLauncher;
@@ -143,7 +167,7 @@ public class DashboardFragment extends Fragment {
 
         //排除正在播放的情况下，被刷新了时，重新加载
         if (playlist == null || playlist.songs == null || playlist.songs.isEmpty()) {
-            musicPlaybackManager.loadPlaylist(PlaylistId, false); // 首次加载不强制刷新
+            musicPlaybackManager.loadPlaylist(currentPlaylistId, false); // 首次加载不强制刷新
         }
         initSongInfoToUI();
         return root;
@@ -164,6 +188,8 @@ public class DashboardFragment extends Fragment {
         btnRefresh = root.findViewById(R.id.btn_refresh); // 刷新按钮
         btnImportPlaylist = root.findViewById(R.id.btn_import_playlist); // 导入歌单按钮
         btnOpenPlaylist = root.findViewById(R.id.btn_open_playlist); // 播放列表入口按钮
+        lyricLine = root.findViewById(R.id.lyric_line);
+        lyricTranslation = root.findViewById(R.id.lyric_translation);
     }
 
     private void initSongInfoToUI() {
@@ -186,7 +212,7 @@ public class DashboardFragment extends Fragment {
                     // 如果没有播放列表，加载默认播放列表
                     // 排除正在播放的情况下，被刷新了时，重新加载
                     if (playlist == null || playlist.songs == null || playlist.songs.isEmpty()) {
-                        musicPlaybackManager.loadPlaylist(PlaylistId, false); // 首次加载不强制刷新
+                        musicPlaybackManager.loadPlaylist(currentPlaylistId, false); // 首次加载不强制刷新
                     }
                 }
 
@@ -290,6 +316,34 @@ public class DashboardFragment extends Fragment {
         if (state.isPlaying) {
             progressHandler.removeCallbacks(progressRunnable);
             progressHandler.postDelayed(progressRunnable, 1000);
+            progressHandler.removeCallbacks(lyricRunnable);
+            progressHandler.post(lyricRunnable);
+        }
+    }
+
+    /**
+     * 显示播放位置对应的歌词行，与上次显示的是同一行时不做任何操作
+     *
+     * @param position 播放位置（毫秒）
+     */
+    private void updateLyric(int position) {
+        if (lyricLine == null) {
+            return;
+        }
+        Lyrics lyrics = musicPlaybackManager.getCurrentLyrics();
+        int index = lyrics.indexAt(position);
+        if (lyrics == displayedLyrics && index == displayedLyricIndex) {
+            return;
+        }
+        displayedLyrics = lyrics;
+        displayedLyricIndex = index;
+        lyricLine.setText(index >= 0 ? lyrics.getLine(index) : "");
+        String translation = index >= 0 ? lyrics.getTranslation(index) : null;
+        if (translation != null) {
+            lyricTranslation.setText(translation);
+            lyricTranslation.setVisibility(View.VISIBLE);
+        } else {
+            lyricTranslation.setVisibility(View.GONE);
         }
     }
 
@@ -298,9 +352,13 @@ public class DashboardFragment extends Fragment {
         importPlaylistLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
-                    // 处理导入歌单Activity的结果
-                    // 这里可以根据需要处理返回的结果
-                    Toast.makeText(getContext(), "暂未实现", Toast.LENGTH_SHORT).show();
+                    // 导入的歌单已按ID写入缓存，切换到该歌单
+                    if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null
+                            && musicPlaybackManager != null) {
+                        currentPlaylistId = result.getData().getIntExtra(
+                                ImportPlaylistActivity.EXTRA_PLAYLIST_ID, currentPlaylistId);
+                        musicPlaybackManager.loadPlaylist(currentPlaylistId, false);
+                    }
                 }
         );
 
@@ -310,7 +368,14 @@ public class DashboardFragment extends Fragment {
                 result -> {
                     // 处理播放列表Activity的结果
                     if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                        int songIndex = result.getData().getIntExtra("song_index", 0);
+                        // 播放列表页可能显示的是更新过的缓存歌单，按歌曲ID对应到当前歌单
+                        int songIndex = resolveSongIndex(
+                                result.getData().getIntExtra(PlaylistActivity.EXTRA_SONG_INDEX, 0),
+                                result.getData().getStringExtra(PlaylistActivity.EXTRA_SONG_ID));
+                        if (songIndex < 0) {
+                            Toast.makeText(getContext(), "歌单已更新，请稍后重试", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
 
                         // 更新当前歌曲索引
                         currentSongIndex = songIndex;
@@ -350,12 +415,33 @@ public class DashboardFragment extends Fragment {
 
         // 打开PlaylistActivity
         Intent intent = new Intent(getActivity(), PlaylistActivity.class);
-        intent.putExtra(PlaylistActivity.EXTRA_PLAYLIST, playlist);
+        // 已缓存的歌单由播放列表页在后台按ID读取（大歌单按需解码），不整个序列化进Intent；
+        // 缓存内容可能比当前歌单新，选中结果按歌曲ID对应回来
+        if (PlaylistCacheManager.getInstance(requireContext()).isCached(playlist.id)) {
+            intent.putExtra(PlaylistActivity.EXTRA_PLAYLIST_ID, playlist.id);
+        } else {
+            intent.putExtra(PlaylistActivity.EXTRA_PLAYLIST, playlist);
+        }
         // 传递当前播放的歌曲索引，而不是当前选中的歌曲索引
         intent.putExtra(PlaylistActivity.EXTRA_CURRENT_SONG_INDEX, currentPlayingSongIndex >= 0 ? currentPlayingSongIndex : currentSongIndex);
         playlistLauncher.launch(intent); // 使用新的API
     }
 
+    /**
+     * 把播放列表页返回的选择对应到当前歌单：下标处就是该歌曲时直接使用，否则取离该下标最近的同ID歌曲
+     *
+     * @return 当前歌单中的下标，歌曲不在当前歌单中时返回-1
+     */
+    private int resolveSongIndex(int index, String songId) {
+        if (playlist == null || playlist.songs == null) {
+            return -1;
+        }
+        if (songId == null) {
+            return index >= 0 && index < playlist.songs.size() ? index : -1;
+        }
+        return PlaylistDiff.findNearest(playlist.songs, songId, index);
+    }
+
     /**
      * 更新播放模式按钮图标
      */
@@ -392,14 +478,23 @@ public class DashboardFragment extends Fragment {
             Toast.makeText(getContext(), "开始获取最新歌单...", Toast.LENGTH_SHORT).show();
             // 立即开始新的请求
             if (musicPlaybackManager != null) {
-                musicPlaybackManager.loadPlaylist(PlaylistId, true); // 强制刷新
+                musicPlaybackManager.loadPlaylist(currentPlaylistId, true); // 强制刷新
             }
         }, 500); // 延迟500毫秒确保请求被取消
     }
 
     private void handlePlaylistLoaded(PlaylistData playlistData) {
+        PlaylistData previous = this.playlist;
         this.playlist = playlistData;
 
+        // 歌单刷新后按歌曲ID重新定位当前歌曲，与MusicPlaybackManager的规则一致：
+        // 当前歌曲被移除时下标置为-1，界面继续显示正在播放的歌曲，下一首从头开始
+        if (!isFragmentFirstLoaded && previous != null && previous != playlistData && currentSongIndex >= 0) {
+            int remapped = PlaylistDiff.remapIndex(previous.songs, playlistData.songs, currentSongIndex);
+            currentSongIndex = remapped;
+            currentPlayingSongIndex = remapped;
+        }
+
         // 只有在首次加载且没有音乐正在播放时才设置初始歌曲
         if (isFragmentFirstLoaded && playlistData.songs != null && !playlistData.songs.isEmpty()) {
             // 检查是否有音乐正在播放
@@ -427,7 +522,9 @@ public class DashboardFragment extends Fragment {
         songArtist.setText(song.getAr_name());
 
         if (song.getPic() != null && !song.getPic().isEmpty()) {
-            Picasso.get().load(song.getPic()).into(albumCover);
+            String coverUrl = DataSaverManager.getInstance()
+                    .getCoverUrl(song.getPic(), DataSaverManager.COVER_THUMBNAIL_SIZE);
+            Picasso.get().load(coverUrl).into(albumCover);
         }
     }
 
@@ -447,6 +544,7 @@ public class DashboardFragment extends Fragment {
     public void onDestroy() {
         super.onDestroy();
         progressHandler.removeCallbacks(progressRunnable);
+        progressHandler.removeCallbacks(lyricRunnable);
 
         if (musicPlaybackManager != null) {
             musicPlaybackManager.destroy();
@@ -1,5 +1,6 @@
 package com.flying.whitefox.ui.dashboard;
 
+import android.content.Intent;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.MotionEvent;
@@ -16,6 +17,8 @@ import com.flying.whitefox.utils.CustomPlaylistParser;
 import com.flying.whitefox.utils.cache.PlaylistCacheManager;
 
 public class ImportPlaylistActivity extends AppCompatActivity {
+    public static final String EXTRA_PLAYLIST_ID = "extra_playlist_id";
+
     private EditText etPlaylistData;
     private Button btnCancel;
     private Button btnImport;
@@ -28,7 +31,7 @@ public class ImportPlaylistActivity extends AppCompatActivity {
 
         initViews();
         setupListeners();
-        cacheManager = new PlaylistCacheManager(this);
+        cacheManager = PlaylistCacheManager.getInstance(this);
     }
 
     private void initViews() {
@@ -68,8 +71,8 @@ public class ImportPlaylistActivity extends AppCompatActivity {
             // 保存到缓存
             cacheManager.savePlaylist(customPlaylist);
 
-            // 通过结果返回给DashboardFragment
-            setResult(RESULT_OK);
+            // 通过结果返回给DashboardFragment，按歌单ID从缓存加载
+            setResult(RESULT_OK, new Intent().putExtra(EXTRA_PLAYLIST_ID, customPlaylist.id));
             
             Toast.makeText(this, "歌单导入成功，共 " + customPlaylist.songs.size() + " 首歌曲", Toast.LENGTH_LONG).show();
             
@@ -2,7 +2,12 @@ package com.flying.whitefox.ui.dashboard;
 
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.Toast;
 
@@ -15,7 +20,15 @@ import com.flying.whitefox.data.model.music.PlaylistData;
 import com.flying.whitefox.data.model.music.QualityLevel;
 import com.flying.whitefox.data.model.music.SongData;
 import com.flying.whitefox.service.MusicService;
+import com.flying.whitefox.utils.PlaylistDiff;
+import com.flying.whitefox.utils.cache.PlaylistCacheManager;
+import com.flying.whitefox.utils.download.OfflineDownloadManager;
+import com.flying.whitefox.utils.network.AdaptiveQualityPolicy;
+import com.flying.whitefox.utils.search.PinyinSearchIndex;
+import com.flying.whitefox.utils.search.PlaylistSearchIndex;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -23,11 +36,31 @@ public class PlaylistActivity extends AppCompatActivity {
     private static final String TAG = "PlaylistActivity";
 
     public static final String EXTRA_PLAYLIST = "extra_playlist";
+    public static final String EXTRA_PLAYLIST_ID = "extra_playlist_id";
     public static final String EXTRA_CURRENT_SONG_INDEX = "extra_current_song_index";
+    // 返回结果：选中歌曲在本页列表中的下标及其ID；按ID打开时本页列表可能比调用方的新，调用方应以ID为准
+    public static final String EXTRA_SONG_INDEX = "song_index";
+    public static final String EXTRA_SONG_ID = "song_id";
+    private static final long PINYIN_SEARCH_DELAY = 200; // 输入停止后再做拼音匹配（毫秒）
 
     private RecyclerView recyclerView;
     private ImageButton btnClose;
+    private ImageButton btnDownload;
+    private EditText etFilter;
+    private PlaylistAdapter adapter;
+    private PlaylistSearchIndex searchIndex;
+    private PinyinSearchIndex pinyinIndex;
     private PlaylistData playlist;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingPinyinSearch;
+    private CompletableFuture<int[]> pinyinSearchFuture;
+    private int filterGeneration = 0; // 每次过滤加一，丢弃过期的拼音匹配结果
+    // 后台刷新写入缓存后，按歌曲ID差异更新列表
+    private final PlaylistCacheManager.OnPlaylistUpdatedListener playlistUpdatedListener = (playlistId, updated) -> {
+        if (updated != null && updated.songs != null) {
+            runOnUiThread(() -> applyUpdatedPlaylist(playlistId, updated));
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -37,21 +70,52 @@ public class PlaylistActivity extends AppCompatActivity {
         initViews();
         initData();
         setupListeners();
+        PlaylistCacheManager.getInstance(this).addOnPlaylistUpdatedListener(playlistUpdatedListener);
     }
 
     private void initViews() {
         recyclerView = findViewById(R.id.recycler_view_playlist);
         btnClose = findViewById(R.id.btn_close);
+        btnDownload = findViewById(R.id.btn_download);
+        etFilter = findViewById(R.id.et_filter);
 
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
     }
 
     private void initData() {
-        playlist = (PlaylistData) getIntent().getSerializableExtra(EXTRA_PLAYLIST);
         int currentSongIndex = getIntent().getIntExtra(EXTRA_CURRENT_SONG_INDEX, 0);
+        PlaylistData passed = (PlaylistData) getIntent().getSerializableExtra(EXTRA_PLAYLIST);
+        if (passed != null || !getIntent().hasExtra(EXTRA_PLAYLIST_ID)) {
+            showPlaylist(passed, currentSongIndex);
+            return;
+        }
+        // 从缓存打开：读文件和解码在后台进行，大歌单的歌曲在显示时才解码
+        int playlistId = getIntent().getIntExtra(EXTRA_PLAYLIST_ID, 0);
+        PlaylistCacheManager cacheManager = PlaylistCacheManager.getInstance(this);
+        CompletableFuture.supplyAsync(() -> cacheManager.getPlaylist(playlistId, true))
+                .thenAccept(cached -> runOnUiThread(() -> {
+                    if (isFinishing()) {
+                        return;
+                    }
+                    if (cached == null) {
+                        Toast.makeText(this, "歌单缓存已失效，请返回重试", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    showPlaylist(cached, currentSongIndex);
+                }))
+                .exceptionally(throwable -> {
+                    Log.e(TAG, "读取缓存歌单失败", throwable);
+                    return null;
+                });
+    }
 
+    private void showPlaylist(PlaylistData data, int currentSongIndex) {
+        playlist = data;
         if (playlist != null && playlist.songs != null) {
-            PlaylistAdapter adapter = new PlaylistAdapter(playlist.songs, currentSongIndex, new PlaylistAdapter.OnSongClickListener() {
+            // 后台构建搜索索引，构建完成前的查询也能得到完整结果
+            searchIndex = PlaylistSearchIndex.build(playlist.songs);
+            loadPinyinIndex();
+            adapter = new PlaylistAdapter(playlist.songs, currentSongIndex, new PlaylistAdapter.OnSongClickListener() {
                 @Override
                 public void onSongClick(PlaylistData.Song song, int position) {
                     playSong(position);
@@ -63,6 +127,176 @@ public class PlaylistActivity extends AppCompatActivity {
 
     private void setupListeners() {
         btnClose.setOnClickListener(v -> finish());
+        btnDownload.setOnClickListener(v -> downloadPlaylist());
+        btnDownload.setOnLongClickListener(v -> {
+            pauseDownloads();
+            return true;
+        });
+        etFilter.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                filterSongs(s.toString());
+            }
+        });
+    }
+
+    /**
+     * 后台读取或计算拼音索引，就绪后按当前输入重新过滤
+     */
+    private void loadPinyinIndex() {
+        PlaylistCacheManager cacheManager = PlaylistCacheManager.getInstance(this);
+        PlaylistData source = playlist;
+        CompletableFuture.supplyAsync(() -> PinyinSearchIndex.load(cacheManager, source))
+                .thenAccept(index -> runOnUiThread(() -> {
+                    if (isFinishing() || source != playlist) {
+                        return;
+                    }
+                    pinyinIndex = index;
+                    String query = etFilter.getText().toString();
+                    if (PinyinSearchIndex.isPinyinQuery(query)) {
+                        filterSongs(query);
+                    }
+                }))
+                .exceptionally(throwable -> {
+                    Log.e(TAG, "加载拼音索引失败", throwable);
+                    return null;
+                });
+    }
+
+    private void filterSongs(String query) {
+        if (adapter == null || searchIndex == null) {
+            return;
+        }
+        int generation = ++filterGeneration;
+        cancelPinyinSearch();
+        int[] matches = searchIndex.search(query);
+        adapter.setFilter(matches);
+        recyclerView.scrollToPosition(0);
+        // 纯字母输入同时按拼音匹配：输入停顿后在后台计算，结果排在文字匹配之后
+        if (matches != null && pinyinIndex != null && PinyinSearchIndex.isPinyinQuery(query)) {
+            PinyinSearchIndex index = pinyinIndex;
+            pendingPinyinSearch = () -> {
+                pendingPinyinSearch = null;
+                CompletableFuture<int[]> future = index.searchAsync(query);
+                pinyinSearchFuture = future;
+                future
+                        .thenAccept(pinyinMatches -> runOnUiThread(() -> {
+                            if (isFinishing() || generation != filterGeneration || index != pinyinIndex) {
+                                return;
+                            }
+                            adapter.setFilter(mergeMatches(matches, pinyinMatches));
+                        }))
+                        .exceptionally(throwable -> {
+                            if (!future.isCancelled()) {
+                                Log.e(TAG, "拼音匹配失败", throwable);
+                            }
+                            return null;
+                        });
+            };
+            mainHandler.postDelayed(pendingPinyinSearch, PINYIN_SEARCH_DELAY);
+        }
+    }
+
+    private void cancelPinyinSearch() {
+        if (pendingPinyinSearch != null) {
+            mainHandler.removeCallbacks(pendingPinyinSearch);
+            pendingPinyinSearch = null;
+        }
+        if (pinyinSearchFuture != null) {
+            // 尚未开始的匹配不再执行
+            pinyinSearchFuture.cancel(false);
+            pinyinSearchFuture = null;
+        }
+    }
+
+    private int[] mergeMatches(int[] first, int[] second) {
+        boolean[] seen = new boolean[playlist.songs.size()];
+        int[] merged = new int[first.length + second.length];
+        int size = 0;
+        for (int[] matches : new int[][]{first, second}) {
+            for (int index : matches) {
+                if (!seen[index]) {
+                    seen[index] = true;
+                    merged[size++] = index;
+                }
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * 当前显示的歌单有了新内容：只刷新变化的行，生效后重建搜索索引并按当前输入重新过滤
+     */
+    private void applyUpdatedPlaylist(int playlistId, PlaylistData updated) {
+        if (isFinishing() || adapter == null || playlist == null || playlist.id != playlistId
+                || PlaylistDiff.isSamePlaylist(playlist, updated)) {
+            return;
+        }
+        Log.d(TAG, "歌单已更新，按差异刷新列表: " + updated.name);
+        adapter.updateSongs(updated.songs, () -> {
+            if (isFinishing()) {
+                return;
+            }
+            playlist = updated;
+            if (searchIndex != null) {
+                searchIndex.cancel();
+            }
+            searchIndex = PlaylistSearchIndex.build(updated.songs);
+            pinyinIndex = null;
+            loadPinyinIndex();
+            String query = etFilter.getText().toString();
+            if (!query.trim().isEmpty()) {
+                filterSongs(query);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        PlaylistCacheManager.getInstance(this).removeOnPlaylistUpdatedListener(playlistUpdatedListener);
+        cancelPinyinSearch();
+        if (searchIndex != null) {
+            searchIndex.cancel();
+        }
+    }
+
+    /**
+     * 下载整个歌单供离线播放
+     */
+    private void downloadPlaylist() {
+        if (playlist == null || playlist.songs == null) {
+            return;
+        }
+        OfflineDownloadManager downloadManager = OfflineDownloadManager.getInstance();
+        if (!downloadManager.isInitialized()) {
+            // 下载管理随播放服务初始化，与播放共享链接解析
+            Toast.makeText(this, "播放服务未启动，暂时无法下载", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        int added = downloadManager.downloadPlaylist(playlist, AdaptiveQualityPolicy.getInstance().getMaxLevel());
+        int downloaded = downloadManager.getDownloadedCount(playlist);
+        String message = added > 0
+                ? "开始下载 " + added + " 首歌曲（长按暂停）"
+                : "歌单已全部加入下载（已完成 " + downloaded + "/" + playlist.songs.size() + "）";
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+        Log.d(TAG, message);
+    }
+
+    /**
+     * 暂停所有下载，再次点击下载时续传
+     */
+    private void pauseDownloads() {
+        OfflineDownloadManager.getInstance().pauseAll();
+        Toast.makeText(this, "已暂停下载", Toast.LENGTH_SHORT).show();
     }
 
     private void playSong(int index) {
@@ -74,7 +308,8 @@ public class PlaylistActivity extends AppCompatActivity {
         Toast.makeText(this, "正在获取歌曲播放链接: " + song.name, Toast.LENGTH_SHORT).show();
         // 返回结果给DashboardFragment
         setResult(RESULT_OK, getIntent()
-                .putExtra("song_index", index));
+                .putExtra(EXTRA_SONG_INDEX, index)
+                .putExtra(EXTRA_SONG_ID, song.id));
         finish();
     }
 }
@@ -1,5 +1,6 @@
 package com.flying.whitefox.ui.dashboard;
 
+import android.annotation.SuppressLint;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,13 +11,16 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.flying.whitefox.R;
 import com.flying.whitefox.data.model.music.PlaylistData;
+import com.flying.whitefox.utils.PlaylistDiff;
 
 import java.util.List;
 
 public class PlaylistAdapter extends RecyclerView.Adapter<PlaylistAdapter.SongViewHolder> {
     private List<PlaylistData.Song> songs;
     private int currentSongIndex;
+    private int[] filteredIndices; // 过滤后显示的歌曲在原列表中的下标，null表示不过滤
     private OnSongClickListener listener;
+    private int updateGeneration = 0; // 每次更新歌曲列表加一，丢弃过期的差异结果
 
     public interface OnSongClickListener {
         void onSongClick(PlaylistData.Song song, int position);
@@ -37,15 +41,65 @@ public class PlaylistAdapter extends RecyclerView.Adapter<PlaylistAdapter.SongVi
 
     @Override
     public void onBindViewHolder(@NonNull SongViewHolder holder, int position) {
-        PlaylistData.Song song = songs.get(position);
-        holder.bind(song, position);
+        int songIndex = toSongIndex(position);
+        PlaylistData.Song song = songs.get(songIndex);
+        holder.bind(song, songIndex);
+    }
+
+    private int toSongIndex(int position) {
+        return filteredIndices != null ? filteredIndices[position] : position;
     }
 
     @Override
     public int getItemCount() {
+        if (filteredIndices != null) {
+            return filteredIndices.length;
+        }
         return songs != null ? songs.size() : 0;
     }
 
+    /**
+     * 只显示指定下标的歌曲，点击回调中的位置仍为原列表中的下标
+     *
+     * @param indices 原列表中的下标，null表示显示全部
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    public void setFilter(int[] indices) {
+        filteredIndices = indices;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 更新歌曲列表：在后台按歌曲ID计算差异，完成后只刷新变化的行，并把当前歌曲下标映射到新列表。
+     * 过滤中的下标随列表失效，此时清除过滤并整体刷新，由调用方在onApplied中按新列表重新过滤
+     *
+     * @param newSongs  新的歌曲列表
+     * @param onApplied 新列表生效后在主线程执行，更新被更晚的调用取代时不执行
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    public void updateSongs(List<PlaylistData.Song> newSongs, Runnable onApplied) {
+        List<PlaylistData.Song> oldSongs = songs;
+        int generation = ++updateGeneration;
+        PlaylistDiff.calculateAsync(oldSongs, newSongs, result -> {
+            if (generation != updateGeneration) {
+                return;
+            }
+            songs = newSongs;
+            currentSongIndex = result.remapIndex(currentSongIndex);
+            if (filteredIndices != null) {
+                filteredIndices = null;
+                notifyDataSetChanged();
+            } else {
+                result.dispatchUpdatesTo(this);
+            }
+            onApplied.run();
+        });
+    }
+
+    public int getCurrentSongIndex() {
+        return currentSongIndex;
+    }
+
     public class SongViewHolder extends RecyclerView.ViewHolder {
         private TextView tvSongName;
         private TextView tvSongArtist;
@@ -69,9 +123,11 @@ public class PlaylistAdapter extends RecyclerView.Adapter<PlaylistAdapter.SongVi
                 indicator.setVisibility(View.GONE);
             }
 
+            // 行移动后不会重新绑定，点击时再取当前位置
             itemView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onSongClick(song, position);
+                int adapterPosition = getBindingAdapterPosition();
+                if (listener != null && adapterPosition != RecyclerView.NO_POSITION) {
+                    listener.onSongClick(song, toSongIndex(adapterPosition));
                 }
             });
         }
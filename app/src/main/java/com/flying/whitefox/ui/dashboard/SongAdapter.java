@@ -1,9 +1,6 @@
 package com.flying.whitefox.ui.dashboard;
 
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,20 +9,20 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.flying.whitefox.R;
 import com.flying.whitefox.data.model.music.PlaylistData;
+import com.flying.whitefox.utils.PlaylistDiff;
+import com.flying.whitefox.utils.network.DataSaverManager;
 import com.squareup.picasso.Picasso;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.List;
 
 public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder> {
-    private List<PlaylistData.Song> songs;
+    // 在后台线程按歌曲ID比较新旧列表，只刷新变化的行
+    private final AsyncListDiffer<PlaylistData.Song> differ = new AsyncListDiffer<>(this, PlaylistDiff.SONG_ITEM_CALLBACK);
     private OnSongClickListener listener;
     private static final String TAG = "SongAdapter";
 
@@ -35,8 +32,8 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
     }
 
     public SongAdapter(List<PlaylistData.Song> songs, OnSongClickListener listener) {
-        this.songs = songs;
         this.listener = listener;
+        differ.submitList(songs);
     }
 
     @NonNull
@@ -48,7 +45,7 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull SongViewHolder holder, int position) {
-        PlaylistData.Song song = songs.get(position);
+        PlaylistData.Song song = differ.getCurrentList().get(position);
         holder.title.setText(song.name);
         holder.artist.setText(song.ar_name);
         
@@ -56,22 +53,25 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
             loadAlbumCover(song.pic, holder.albumCover);
         }
 
+        // 行移动后不会重新绑定，点击时再取当前位置
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onSongClick(song, position);
+            int adapterPosition = holder.getBindingAdapterPosition();
+            if (listener != null && adapterPosition != RecyclerView.NO_POSITION) {
+                listener.onSongClick(song, adapterPosition);
             }
         });
 
         holder.playButton.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onPlayButtonClick(song, position);
+            int adapterPosition = holder.getBindingAdapterPosition();
+            if (listener != null && adapterPosition != RecyclerView.NO_POSITION) {
+                listener.onPlayButtonClick(song, adapterPosition);
             }
         });
     }
 
     @Override
     public int getItemCount() {
-        return songs != null ? songs.size() : 0;
+        return differ.getCurrentList().size();
     }
 
     public static class SongViewHolder extends RecyclerView.ViewHolder {
@@ -89,28 +89,17 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
         }
     }
 
+    /**
+     * 更新歌曲列表，差异在后台计算完成后只刷新插入、删除、移动和内容变化的行
+     */
     public void updateSongs(List<PlaylistData.Song> newSongs) {
-        this.songs = newSongs;
-        notifyDataSetChanged();
+        differ.submitList(newSongs);
     }
 
-    // 使用HttpURLConnection加载专辑封面
+    // 通过Picasso加载专辑封面，与其他请求共享HTTP客户端和缓存
     private void loadAlbumCover(String imageUrl, ImageView imageView) {
-        new Thread(() -> {
-            try {
-                URL url = new URL(imageUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setDoInput(true);
-                connection.connect();
-                InputStream input = connection.getInputStream();
-                Bitmap bitmap = BitmapFactory.decodeStream(input);
-                
-                // 在主线程中更新UI
-                imageView.post(() -> imageView.setImageBitmap(bitmap));
-            } catch (IOException e) {
-                Log.e(TAG, "加载专辑封面失败", e);
-            }
-        }).start();
+        // 省流量模式下加载小尺寸缩略图
+        String url = DataSaverManager.getInstance().getCoverUrl(imageUrl, DataSaverManager.LIST_THUMBNAIL_SIZE);
+        Picasso.get().load(url).into(imageView);
     }
 }
-
@@ -10,15 +10,18 @@ import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.flying.whitefox.R;
 import com.flying.whitefox.databinding.FragmentMineBinding;
+import com.flying.whitefox.utils.network.DataSaverManager;
 
 public class MineFragment extends Fragment {
 
     private FragmentMineBinding binding;
+    private MineViewModel mineViewModel;
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
-        MineViewModel mineViewModel =
+        mineViewModel =
                 new ViewModelProvider(this).get(MineViewModel.class);
 
         binding = FragmentMineBinding.inflate(inflater, container, false);
@@ -26,9 +29,45 @@ public class MineFragment extends Fragment {
 
         final TextView textView = binding.textNotifications;
         mineViewModel.getText().observe(getViewLifecycleOwner(), textView::setText);
+        setupDataSaverMode();
         return root;
     }
 
+    /**
+     * 省流量模式设置：关闭、计费网络下自动开启、始终开启
+     */
+    private void setupDataSaverMode() {
+        DataSaverManager dataSaver = DataSaverManager.getInstance();
+        switch (dataSaver.getMode()) {
+            case OFF:
+                binding.rgDataSaver.check(R.id.rb_data_saver_off);
+                break;
+            case ON:
+                binding.rgDataSaver.check(R.id.rb_data_saver_on);
+                break;
+            default:
+                binding.rgDataSaver.check(R.id.rb_data_saver_auto);
+                break;
+        }
+        binding.rgDataSaver.setOnCheckedChangeListener((group, checkedId) -> {
+            if (checkedId == R.id.rb_data_saver_off) {
+                dataSaver.setMode(DataSaverManager.Mode.OFF);
+            } else if (checkedId == R.id.rb_data_saver_on) {
+                dataSaver.setMode(DataSaverManager.Mode.ON);
+            } else {
+                dataSaver.setMode(DataSaverManager.Mode.AUTO);
+            }
+            mineViewModel.showDataUsage(dataSaver.getSessionSummary());
+        });
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // 每次回到页面刷新流量统计
+        mineViewModel.showDataUsage(DataSaverManager.getInstance().getSessionSummary());
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
@@ -13,6 +13,13 @@ public class MineViewModel extends ViewModel {
         mText.setValue("This is notifications fragment");
     }
 
+    /**
+     * 显示本次会话的流量统计
+     */
+    public void showDataUsage(String summary) {
+        mText.setValue(summary);
+    }
+
     public LiveData<String> getText() {
         return mText;
     }
@@ -0,0 +1,256 @@
+package com.flying.whitefox.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 歌单详情流式解析器
+ * 基于Gson JsonReader边读边解析，直接生成PlaylistData.Song，
+ * 不再把整个响应读成String再构建JSONObject树
+ */
+public class PlaylistDetailParser {
+    private static final String TAG = "PlaylistDetailParser";
+    public static final String DEFAULT_PIC = "https://p2.music.126.net/6y-UleORITEDbvrOLV0Q8A==/5639395138885805.jpg";
+
+    /**
+     * 解析结果
+     */
+    public static class Result {
+        public int code = 200;
+        public String msg = "";
+        public PlaylistData playlist;
+        public boolean hasResult = false;
+        public long elapsedMillis;
+
+        /**
+         * 服务器是否返回忙碌
+         */
+        public boolean isServerBusy() {
+            return code == -447 || (msg != null && (msg.contains("服务器忙碌") || msg.contains("请稍后再试")));
+        }
+    }
+
+    /**
+     * 解析歌单详情响应
+     *
+     * @param reader     响应内容
+     * @param playlistId 请求的歌单ID，响应中没有ID时使用
+     * @return 解析结果
+     */
+    public static Result parse(Reader reader, int playlistId) throws IOException {
+        long startTime = SystemClock.elapsedRealtime();
+
+        Result result = new Result();
+        PlaylistData playlistData = new PlaylistData();
+        playlistData.id = playlistId;
+
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                switch (name) {
+                    case "code":
+                        result.code = readInt(jsonReader, 200);
+                        break;
+                    case "msg":
+                        result.msg = readString(jsonReader, "");
+                        break;
+                    case "result":
+                        if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                            result.hasResult = true;
+                            readPlaylistObject(jsonReader, playlistData);
+                        } else {
+                            jsonReader.skipValue();
+                        }
+                        break;
+                    default:
+                        jsonReader.skipValue();
+                        break;
+                }
+            }
+            jsonReader.endObject();
+        }
+
+        if (playlistData.name == null) {
+            playlistData.name = "未知歌单";
+        }
+        result.playlist = playlistData;
+        result.elapsedMillis = SystemClock.elapsedRealtime() - startTime;
+        Log.d(TAG, "流式解析歌单完成: " + (playlistData.songs != null ? playlistData.songs.size() : 0)
+                + " 首歌曲, 耗时 " + result.elapsedMillis + "ms");
+        return result;
+    }
+
+    // result对象可能直接包含歌单字段，也可能嵌套在playlist对象中
+    private static void readPlaylistObject(JsonReader reader, PlaylistData playlistData) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "playlist":
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        readPlaylistObject(reader, playlistData);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "id":
+                    playlistData.id = readInt(reader, playlistData.id);
+                    break;
+                case "name":
+                    playlistData.name = readString(reader, "未知歌单");
+                    break;
+                case "tracks":
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        playlistData.songs = readTracks(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private static List<PlaylistData.Song> readTracks(JsonReader reader) throws IOException {
+        List<PlaylistData.Song> songs = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                songs.add(readTrack(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return songs;
+    }
+
+    private static PlaylistData.Song readTrack(JsonReader reader) throws IOException {
+        PlaylistData.Song song = new PlaylistData.Song();
+        song.id = "0";
+        song.name = "未知歌曲";
+        song.ar_name = null;
+        song.al_name = "未知专辑";
+        song.pic = DEFAULT_PIC;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id":
+                    song.id = readString(reader, "0");
+                    break;
+                case "name":
+                    song.name = readString(reader, "未知歌曲");
+                    break;
+                case "ar":
+                case "artists":
+                    // 支持多种格式，优先使用ar
+                    String artistName = readFirstName(reader);
+                    if (artistName != null && (song.ar_name == null || name.equals("ar"))) {
+                        song.ar_name = artistName;
+                    }
+                    break;
+                case "al":
+                case "album":
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        readAlbum(reader, song);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (song.ar_name == null) {
+            song.ar_name = "未知歌手";
+        }
+        return song;
+    }
+
+    // 读取数组中第一个对象的name字段
+    private static String readFirstName(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        String firstName = null;
+        boolean first = true;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (first && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                firstName = "未知歌手";
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("name")) {
+                        firstName = readString(reader, "未知歌手");
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+            first = false;
+        }
+        reader.endArray();
+        return firstName;
+    }
+
+    private static void readAlbum(JsonReader reader, PlaylistData.Song song) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("name")) {
+                song.al_name = readString(reader, "未知专辑");
+            } else if (name.equals("picUrl")) {
+                song.pic = readString(reader, DEFAULT_PIC);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String readString(JsonReader reader, String defaultValue) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        reader.skipValue();
+        return defaultValue;
+    }
+
+    private static int readInt(JsonReader reader, int defaultValue) throws IOException {
+        String value = readString(reader, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return (int) Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
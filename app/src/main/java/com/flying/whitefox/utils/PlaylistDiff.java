@@ -0,0 +1,232 @@
+package com.flying.whitefox.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * 歌单差异计算
+ * 以歌曲ID为键比较新旧歌单，得出插入、删除、移动和内容变化，供列表只更新变化的行，
+ * 并把旧歌单中的下标映射到新歌单
+ */
+public class PlaylistDiff {
+    private static final String TAG = "PlaylistDiff";
+
+    private static final ExecutorService diffExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PlaylistDiff");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 以歌曲ID判断是否为同一行，以显示的字段判断内容是否变化
+     */
+    public static final DiffUtil.ItemCallback<PlaylistData.Song> SONG_ITEM_CALLBACK =
+            new DiffUtil.ItemCallback<PlaylistData.Song>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull PlaylistData.Song oldItem, @NonNull PlaylistData.Song newItem) {
+                    return Objects.equals(oldItem.id, newItem.id);
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull PlaylistData.Song oldItem, @NonNull PlaylistData.Song newItem) {
+                    return isSameContent(oldItem, newItem);
+                }
+            };
+
+    /**
+     * 一次差异计算的结果
+     */
+    public static class Result {
+        private final DiffUtil.DiffResult diffResult;
+        public final int inserted;
+        public final int removed;
+        public final int moved;
+        public final int changed;
+
+        private Result(DiffUtil.DiffResult diffResult, int inserted, int removed, int moved, int changed) {
+            this.diffResult = diffResult;
+            this.inserted = inserted;
+            this.removed = removed;
+            this.moved = moved;
+            this.changed = changed;
+        }
+
+        public boolean hasChanges() {
+            return inserted + removed + moved + changed > 0;
+        }
+
+        /**
+         * 旧歌单中的下标在新歌单中的位置
+         *
+         * @return 新下标，该歌曲已被删除或下标无效时返回-1
+         */
+        public int remapIndex(int oldIndex) {
+            if (oldIndex < 0) {
+                return -1;
+            }
+            try {
+                int newIndex = diffResult.convertOldPositionToNew(oldIndex);
+                return newIndex == DiffUtil.DiffResult.NO_POSITION ? -1 : newIndex;
+            } catch (IndexOutOfBoundsException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * 把变化分发给列表，只刷新变化的行
+         */
+        public void dispatchUpdatesTo(RecyclerView.Adapter<?> adapter) {
+            diffResult.dispatchUpdatesTo(adapter);
+        }
+    }
+
+    private PlaylistDiff() {
+    }
+
+    /**
+     * 计算差异，歌曲较多时耗时较长，应在后台线程调用
+     */
+    public static Result calculate(List<PlaylistData.Song> oldSongs, List<PlaylistData.Song> newSongs) {
+        DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldSongs != null ? oldSongs.size() : 0;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newSongs != null ? newSongs.size() : 0;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return Objects.equals(oldSongs.get(oldItemPosition).id, newSongs.get(newItemPosition).id);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return isSameContent(oldSongs.get(oldItemPosition), newSongs.get(newItemPosition));
+            }
+        }, true);
+
+        int[] counts = new int[4];
+        diffResult.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                counts[0] += count;
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                counts[1] += count;
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                counts[2]++;
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                counts[3] += count;
+            }
+        });
+        Log.d(TAG, "歌单差异: 新增 " + counts[0] + ", 删除 " + counts[1] + ", 移动 " + counts[2] + ", 变化 " + counts[3]);
+        return new Result(diffResult, counts[0], counts[1], counts[2], counts[3]);
+    }
+
+    /**
+     * 在后台线程计算差异，结果在主线程回调
+     */
+    public static void calculateAsync(List<PlaylistData.Song> oldSongs, List<PlaylistData.Song> newSongs,
+                                      Consumer<Result> callback) {
+        diffExecutor.execute(() -> {
+            Result result = calculate(oldSongs, newSongs);
+            mainHandler.post(() -> callback.accept(result));
+        });
+    }
+
+    /**
+     * 按歌曲ID把旧歌单中的下标映射到新歌单，不需要完整差异时使用
+     *
+     * @return 新下标，该歌曲已不在新歌单中或下标无效时返回-1
+     */
+    public static int remapIndex(List<PlaylistData.Song> oldSongs, List<PlaylistData.Song> newSongs, int oldIndex) {
+        if (oldSongs == null || newSongs == null || oldIndex < 0 || oldIndex >= oldSongs.size()) {
+            return -1;
+        }
+        return findNearest(newSongs, oldSongs.get(oldIndex).id, oldIndex);
+    }
+
+    /**
+     * 按歌曲ID查找下标，同一首歌出现多次时取与给定位置最接近的一次
+     *
+     * @param songs     歌曲列表
+     * @param songId    歌曲ID
+     * @param nearIndex 参考位置，通常是该歌曲原来的下标
+     * @return 下标，不存在时返回-1
+     */
+    public static int findNearest(List<PlaylistData.Song> songs, String songId, int nearIndex) {
+        if (songs == null) {
+            return -1;
+        }
+        int best = -1;
+        for (int i = 0; i < songs.size(); i++) {
+            if (Objects.equals(songs.get(i).id, songId)
+                    && (best < 0 || Math.abs(i - nearIndex) < Math.abs(best - nearIndex))) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 两个歌单的名称和歌曲（顺序、ID及显示的字段）是否完全一致，用于判断后台刷新的结果是否需要通知界面
+     */
+    public static boolean isSamePlaylist(PlaylistData oldPlaylist, PlaylistData newPlaylist) {
+        if (oldPlaylist == newPlaylist) {
+            return true;
+        }
+        if (oldPlaylist == null || newPlaylist == null || !Objects.equals(oldPlaylist.name, newPlaylist.name)) {
+            return false;
+        }
+        List<PlaylistData.Song> oldSongs = oldPlaylist.songs;
+        List<PlaylistData.Song> newSongs = newPlaylist.songs;
+        if (oldSongs == null || newSongs == null) {
+            return oldSongs == newSongs;
+        }
+        if (oldSongs.size() != newSongs.size()) {
+            return false;
+        }
+        for (int i = 0; i < oldSongs.size(); i++) {
+            PlaylistData.Song oldSong = oldSongs.get(i);
+            PlaylistData.Song newSong = newSongs.get(i);
+            if (!Objects.equals(oldSong.id, newSong.id) || !isSameContent(oldSong, newSong)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameContent(PlaylistData.Song oldSong, PlaylistData.Song newSong) {
+        return Objects.equals(oldSong.name, newSong.name)
+                && Objects.equals(oldSong.ar_name, newSong.ar_name)
+                && Objects.equals(oldSong.al_name, newSong.al_name)
+                && Objects.equals(oldSong.pic, newSong.pic);
+    }
+}
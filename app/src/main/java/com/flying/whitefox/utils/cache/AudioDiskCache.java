@@ -0,0 +1,291 @@
+package com.flying.whitefox.utils.cache;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 音频磁盘缓存（按字节数限制的LRU）
+ * 以歌曲ID和音质为键。下载中的数据写入 .part 文件（从0开始连续的前缀），
+ * 下载完整后改名为 .audio 文件。部分文件同样计入容量，超过容量时先清理没有写入者的部分文件，
+ * 再按最近使用时间淘汰完整文件
+ */
+public class AudioDiskCache {
+    private static final String TAG = "AudioDiskCache";
+    private static final String COMPLETE_SUFFIX = ".audio";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final long PARTIAL_MAX_AGE = 24 * 60 * 60 * 1000; // 超过1天未续传的部分文件直接清理
+
+    private final File cacheDir;
+    private final long maxBytes;
+    // 完整文件，按访问顺序排列，最久未使用的在前
+    private final LinkedHashMap<String, Long> completeEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    // 正在写入的键，同一键同时只允许一个写入者
+    private final Set<String> writingKeys = new HashSet<>();
+    // 部分文件对应的完整长度（来自服务器响应）
+    private final Map<String, Long> knownLengths = new ConcurrentHashMap<>();
+
+    public AudioDiskCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "创建音频缓存目录失败: " + cacheDir);
+        }
+        loadEntries();
+    }
+
+    /**
+     * 生成缓存键
+     *
+     * @param songId  歌曲ID
+     * @param quality 音质字符串
+     */
+    public static String buildKey(String songId, String quality) {
+        String safeQuality = quality == null || quality.isEmpty() ? "standard" : quality;
+        return sanitize(songId) + "_" + sanitize(safeQuality);
+    }
+
+    private static String sanitize(String value) {
+        return value.replaceAll("[^A-Za-z0-9\\-]", "-");
+    }
+
+    /**
+     * 获取完整的缓存文件，同时更新最近使用时间
+     *
+     * @return 完整文件，不存在返回null
+     */
+    public synchronized File getCompleteFile(String key) {
+        // get会更新访问顺序
+        if (completeEntries.get(key) == null) {
+            return null;
+        }
+        File file = completeFile(key);
+        if (!file.exists()) {
+            Long size = completeEntries.remove(key);
+            totalBytes -= size != null ? size : 0;
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    public synchronized boolean isComplete(String key) {
+        return completeEntries.containsKey(key) && completeFile(key).exists();
+    }
+
+    /**
+     * 部分文件，写入者追加数据；不存在时返回的文件长度为0
+     */
+    public File getPartialFile(String key) {
+        return partialFile(key);
+    }
+
+    public long getPartialLength(String key) {
+        File file = partialFile(key);
+        return file.exists() ? file.length() : 0;
+    }
+
+    /**
+     * 服务器告知的完整长度，未知返回-1
+     */
+    public long getKnownLength(String key) {
+        Long length = knownLengths.get(key);
+        return length != null ? length : -1;
+    }
+
+    public void setKnownLength(String key, long length) {
+        if (length > 0) {
+            knownLengths.put(key, length);
+        }
+    }
+
+    /**
+     * 尝试成为该键的写入者
+     *
+     * @return 是否成功，已有其他写入者时返回false
+     */
+    public synchronized boolean tryAcquireWriter(String key) {
+        if (completeEntries.containsKey(key)) {
+            return false;
+        }
+        return writingKeys.add(key);
+    }
+
+    /**
+     * 写入结束（完成、中断或失败），留下的部分文件计入容量后按需清理
+     */
+    public synchronized void releaseWriter(String key) {
+        writingKeys.remove(key);
+        trimToSize();
+    }
+
+    /**
+     * 部分文件已下载完整，转为完整文件并按容量淘汰旧文件
+     *
+     * @return 是否成功
+     */
+    public synchronized boolean commit(String key) {
+        File partial = partialFile(key);
+        File complete = completeFile(key);
+        long expected = getKnownLength(key);
+        if (!partial.exists() || (expected > 0 && partial.length() != expected)) {
+            return false;
+        }
+        if (complete.exists() && !complete.delete()) {
+            return false;
+        }
+        if (!partial.renameTo(complete)) {
+            Log.w(TAG, "缓存文件改名失败: " + key);
+            return false;
+        }
+        knownLengths.remove(key);
+        long size = complete.length();
+        Long previous = completeEntries.put(key, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        Log.d(TAG, "音频已完整缓存: " + key + ", " + size / 1024 + "KB, 缓存总量 " + totalBytes / 1024 / 1024 + "MB");
+        trimToSize();
+        return true;
+    }
+
+    /**
+     * 已完整缓存的音质列表
+     *
+     * @param songId 歌曲ID
+     */
+    public synchronized List<String> getCachedQualities(String songId) {
+        List<String> qualities = new ArrayList<>();
+        String prefix = sanitize(songId) + "_";
+        for (String key : completeEntries.keySet()) {
+            if (key.startsWith(prefix)) {
+                qualities.add(key.substring(prefix.length()));
+            }
+        }
+        return qualities;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized void clear() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!writingKeys.contains(keyOf(file))) {
+                    file.delete();
+                }
+            }
+        }
+        completeEntries.clear();
+        knownLengths.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * 按容量清理：过期的部分文件直接删除；仍超出时先删除没有写入者的部分文件（最久未写入的在前），
+     * 再按LRU淘汰完整文件。正在写入的部分文件不删除，但计入容量
+     */
+    private void trimToSize() {
+        long now = System.currentTimeMillis();
+        File[] partials = cacheDir.listFiles((dir, name) -> name.endsWith(PARTIAL_SUFFIX));
+        long partialBytes = 0;
+        List<File> idlePartials = new ArrayList<>();
+        if (partials != null) {
+            Arrays.sort(partials, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File partial : partials) {
+                String key = keyOf(partial);
+                if (writingKeys.contains(key)) {
+                    partialBytes += partial.length();
+                } else if (now - partial.lastModified() > PARTIAL_MAX_AGE) {
+                    deletePartial(key, partial);
+                } else {
+                    partialBytes += partial.length();
+                    idlePartials.add(partial);
+                }
+            }
+        }
+        for (File partial : idlePartials) {
+            if (totalBytes + partialBytes <= maxBytes) {
+                break;
+            }
+            long length = partial.length();
+            if (deletePartial(keyOf(partial), partial)) {
+                partialBytes -= length;
+            }
+        }
+
+        Iterator<Map.Entry<String, Long>> iterator = completeEntries.entrySet().iterator();
+        while (totalBytes + partialBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (completeFile(eldest.getKey()).delete() || !completeFile(eldest.getKey()).exists()) {
+                totalBytes -= eldest.getValue();
+                iterator.remove();
+                Log.d(TAG, "淘汰音频缓存: " + eldest.getKey());
+            }
+        }
+    }
+
+    private boolean deletePartial(String key, File partial) {
+        if (!partial.delete() && partial.exists()) {
+            return false;
+        }
+        knownLengths.remove(key);
+        Log.d(TAG, "清理部分缓存: " + key);
+        return true;
+    }
+
+    // 启动时按最后使用时间恢复LRU顺序，部分文件由trimToSize按容量和时间清理
+    private void loadEntries() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (this) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(COMPLETE_SUFFIX)) {
+                    completeEntries.put(keyOf(file), file.length());
+                    totalBytes += file.length();
+                }
+            }
+            trimToSize();
+        }
+        Log.d(TAG, "音频缓存: " + completeEntries.size() + " 首, " + totalBytes / 1024 / 1024 + "MB");
+    }
+
+    private File completeFile(String key) {
+        return new File(cacheDir, key + COMPLETE_SUFFIX);
+    }
+
+    private File partialFile(String key) {
+        return new File(cacheDir, key + PARTIAL_SUFFIX);
+    }
+
+    private static String keyOf(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * 部分文件写入失败时删除，避免留下不连续的数据
+     */
+    public void discardPartial(String key) {
+        File partial = partialFile(key);
+        if (partial.exists() && !partial.delete()) {
+            Log.w(TAG, "删除部分缓存失败: " + key);
+        }
+        knownLengths.remove(key);
+    }
+}
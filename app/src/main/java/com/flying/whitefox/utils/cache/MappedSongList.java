@@ -0,0 +1,134 @@
+package com.flying.whitefox.utils.cache;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * 映射文件上的只读歌曲列表
+ * 歌曲表为定长记录，按下标直接定位，访问时才解码成{@link PlaylistData.Song}，并保留最近访问的少量行；
+ * 打开超大歌单只占用固定的内存
+ */
+final class MappedSongList extends AbstractList<PlaylistData.Song> implements RandomAccess, Serializable {
+    private static final int CACHED_ROWS = 128; // 约为几屏的行数，滚动时来回访问不重复解码
+    private static final int RECORD_SIZE = PlaylistCodec.SONG_FIELD_COUNT * 4;
+
+    private final transient ByteBuffer buffer;
+    private final int size;
+    private final int stringCount;
+    private final int stringOffsetsStart;
+    private final int stringDataStart;
+    private final transient LinkedHashMap<Integer, PlaylistData.Song> rows =
+            new LinkedHashMap<Integer, PlaylistData.Song>(CACHED_ROWS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, PlaylistData.Song> eldest) {
+                    return size() > CACHED_ROWS;
+                }
+            };
+    private transient byte[] scratch = new byte[256];
+
+    private MappedSongList(ByteBuffer buffer, int size, int stringCount) {
+        this.buffer = buffer;
+        this.size = size;
+        this.stringCount = stringCount;
+        this.stringOffsetsStart = PlaylistCodec.MAPPED_HEADER_SIZE + size * RECORD_SIZE;
+        this.stringDataStart = stringOffsetsStart + (stringCount + 1) * 4;
+    }
+
+    /**
+     * 校验文件结构后打开，只读取偏移表，不解码歌曲
+     *
+     * @throws IOException 长度或偏移与文件不符
+     */
+    static MappedSongList open(ByteBuffer buffer, int size, int stringCount) throws IOException {
+        long tableEnd = PlaylistCodec.MAPPED_HEADER_SIZE + (long) size * RECORD_SIZE + (stringCount + 1L) * 4;
+        if (size < 0 || stringCount < 0 || tableEnd > buffer.limit()) {
+            throw new IOException("歌单缓存数据损坏");
+        }
+        MappedSongList list = new MappedSongList(buffer, size, stringCount);
+        int dataLength = buffer.limit() - list.stringDataStart;
+        int previous = 0;
+        for (int i = 0; i <= stringCount; i++) {
+            int offset = buffer.getInt(list.stringOffsetsStart + i * 4);
+            if (offset < previous || offset > dataLength) {
+                throw new IOException("歌单缓存数据损坏");
+            }
+            previous = offset;
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized PlaylistData.Song get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        PlaylistData.Song song = rows.get(index);
+        if (song == null) {
+            song = decodeRow(index);
+            rows.put(index, song);
+        }
+        return song;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // 行在显示时才解码，损坏的引用按缺失字段处理，不在绑定列表时抛出异常
+    private PlaylistData.Song decodeRow(int index) {
+        int record = PlaylistCodec.MAPPED_HEADER_SIZE + index * RECORD_SIZE;
+        PlaylistData.Song song = new PlaylistData.Song();
+        song.id = getRowString(buffer.getInt(record));
+        song.name = getRowString(buffer.getInt(record + 4));
+        song.ar_name = getRowString(buffer.getInt(record + 8));
+        song.al_name = getRowString(buffer.getInt(record + 12));
+        song.pic = getRowString(buffer.getInt(record + 16));
+        return song;
+    }
+
+    private String getRowString(int ref) {
+        return ref > 0 && ref <= stringCount ? getString(ref) : null;
+    }
+
+    /**
+     * 按引用读取字符串，0表示null
+     *
+     * @throws IllegalStateException 引用越界
+     */
+    synchronized String getString(int ref) {
+        if (ref == 0) {
+            return null;
+        }
+        if (ref < 0 || ref > stringCount) {
+            throw new IllegalStateException("歌单缓存字符串引用越界: " + ref);
+        }
+        int start = buffer.getInt(stringOffsetsStart + (ref - 1) * 4);
+        int end = buffer.getInt(stringOffsetsStart + ref * 4);
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int position = stringDataStart + start;
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(position + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 序列化（如通过Intent传递）时转为普通列表
+     */
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
@@ -7,66 +7,626 @@ import android.util.Log;
 
 import com.flying.whitefox.data.model.music.PlaylistData;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 歌单缓存（按歌单ID存储）
+ * 每个歌单以{@link PlaylistCodec}二进制格式单独保存为一个文件，索引记录保存时间、来源和条件请求的校验信息；过期时间按来源区分，
+ * 磁盘和内存中的歌单分别按字节数做LRU淘汰，在几个歌单之间切换时都能命中缓存
+ */
 public class PlaylistCacheManager {
     private static final String TAG = "PlaylistCacheManager";
     private static final String PREF_NAME = "music_playlist_cache";
-    private static final String CACHE_KEY = "playlist_data";
-    private static final String CACHE_TIMESTAMP = "cache_timestamp";
-    private static final long CACHE_DURATION = 6 * 60 * 60 * 1000; // 6小时
+    private static final String INDEX_KEY = "playlist_index";
+    private static final String CACHE_DIR = "playlist_cache";
+    // 旧版本只保存一个歌单，启动时迁移
+    private static final String LEGACY_CACHE_KEY = "playlist_data";
+    private static final String LEGACY_CACHE_TIMESTAMP = "cache_timestamp";
+    private static final String[] LEGACY_VALIDATOR_KEYS = {
+            "validator_playlist_id", "validator_etag", "validator_last_modified", "validator_content_hash"};
+    // 旧版本把唯一一份拼音转写存在偏好设置中，启动时删除
+    private static final String LEGACY_PINYIN_INDEX_KEY = "pinyin_index";
+    private static final String LEGACY_PINYIN_SIGNATURE_KEY = "pinyin_signature";
+    private static final long MAX_DISK_BYTES = 32 * 1024 * 1024;   // 磁盘上所有歌单文件的上限
+    private static final long MAX_MEMORY_BYTES = 2 * 1024 * 1024;  // 内存中已解析歌单的上限（按压缩后的文件大小估算）
+    private static final long MAPPED_MEMORY_COST = 64 * 1024;      // 映射的大歌单在内存中的估算占用
+
+    /**
+     * 歌单来源，决定缓存的有效期
+     */
+    public enum Source {
+        NETWORK(6 * 60 * 60 * 1000L),  // 从接口获取，6小时后过期
+        IMPORTED(Long.MAX_VALUE);      // 用户导入，无法从网络刷新，不过期
+
+        final long ttl;
+
+        Source(long ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     * 缓存歌单对应的校验信息，用于条件请求
+     */
+    public static class Validators {
+        public final String etag;
+        public final String lastModified;
+        public final String contentHash;  // 服务器不提供ETag和Last-Modified时用响应内容的哈希判断是否变化
+
+        public Validators(String etag, String lastModified, String contentHash) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+        }
+
+        public boolean hasHttpValidators() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    /**
+     * 一次缓存查询的结果：歌单及其是否已过期
+     */
+    public static class Lookup {
+        public final PlaylistData playlist;
+        public final boolean stale; // 已超过有效期，可以先展示，但应在后台重新验证
+
+        Lookup(PlaylistData playlist, boolean stale) {
+            this.playlist = playlist;
+            this.stale = stale;
+        }
+    }
+
+    /**
+     * 缓存的歌单被写入新内容时的回调（内容可能与旧歌单相同，由监听方比较）
+     */
+    public interface OnPlaylistUpdatedListener {
+        /**
+         * 在写入缓存的线程上调用
+         *
+         * @param playlistId 歌单ID
+         * @param playlist   新写入的歌单
+         */
+        void onPlaylistUpdated(int playlistId, PlaylistData playlist);
+    }
+
+    /**
+     * 索引中的一条记录
+     */
+    private static class Entry {
+        int playlistId;
+        Source source;
+        long savedAt;      // 保存或最近一次确认未变化的时间
+        long lastAccess;   // 最近一次读取或写入的时间，用于LRU
+        long bytes;        // 文件大小
+        transient long memoryCost; // 解析后在内存中的估算占用，不写入索引
+        String etag;
+        String lastModified;
+        String contentHash;
+
+        boolean isExpired(long now) {
+            return source.ttl != Long.MAX_VALUE && now - savedAt > source.ttl;
+        }
+    }
+
+    private static PlaylistCacheManager instance;
 
     private final SharedPreferences sharedPreferences;
+    private final File cacheDir;
     private final Gson gson;
+    // 按访问顺序排列，最久未使用的在前
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, PlaylistData> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<OnPlaylistUpdatedListener> updateListeners = new CopyOnWriteArrayList<>();
+    private long diskBytes = 0;
+    private long memoryBytes = 0;
 
-    public PlaylistCacheManager(Context context) {
+    private PlaylistCacheManager(Context context) {
         sharedPreferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "创建歌单缓存目录失败: " + cacheDir);
+        }
         gson = new Gson();
+        loadIndex();
+        migrateLegacyCache();
     }
 
+    public static synchronized PlaylistCacheManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaylistCacheManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 保存用户导入的歌单，以歌单自身的ID为键，不过期
+     */
     public void savePlaylist(PlaylistData playlist) {
-        String playlistJson = gson.toJson(playlist);
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(CACHE_KEY, playlistJson);
-        editor.putLong(CACHE_TIMESTAMP, System.currentTimeMillis());
-        editor.apply();
-        Log.d(TAG, "Playlist saved to cache");
+        if (save(playlist.id, playlist, Source.IMPORTED, null, System.currentTimeMillis())) {
+            notifyUpdated(playlist.id, playlist);
+        }
+    }
+
+    /**
+     * 保存从网络获取的歌单及其校验信息
+     *
+     * @param playlistId 歌单ID
+     * @param validators 校验信息，为null时清除旧的校验信息
+     */
+    public void savePlaylist(int playlistId, PlaylistData playlist, Validators validators) {
+        if (save(playlistId, playlist, Source.NETWORK, validators, System.currentTimeMillis())) {
+            notifyUpdated(playlistId, playlist);
+        }
+    }
+
+    public void addOnPlaylistUpdatedListener(OnPlaylistUpdatedListener listener) {
+        updateListeners.add(listener);
+    }
+
+    public void removeOnPlaylistUpdatedListener(OnPlaylistUpdatedListener listener) {
+        updateListeners.remove(listener);
+    }
+
+    // 在锁外回调，监听方可以再读取缓存
+    private void notifyUpdated(int playlistId, PlaylistData playlist) {
+        for (OnPlaylistUpdatedListener listener : updateListeners) {
+            listener.onPlaylistUpdated(playlistId, playlist);
+        }
+    }
+
+    private synchronized boolean save(int playlistId, PlaylistData playlist, Source source,
+                                      Validators validators, long savedAt) {
+        long bytes;
+        try {
+            bytes = PlaylistCodec.write(playlistFile(playlistId), playlist);
+        } catch (IOException e) {
+            Log.e(TAG, "写入歌单缓存失败: " + playlistId, e);
+            return false;
+        }
+        legacyJsonFile(playlistId).delete();
+
+        Entry entry = new Entry();
+        entry.playlistId = playlistId;
+        entry.source = source;
+        entry.savedAt = savedAt;
+        entry.lastAccess = System.currentTimeMillis();
+        entry.bytes = bytes;
+        if (validators != null) {
+            entry.etag = validators.etag;
+            entry.lastModified = validators.lastModified;
+            entry.contentHash = validators.contentHash;
+        }
+        Entry previous = entries.put(playlistId, entry);
+        diskBytes += entry.bytes - (previous != null ? previous.bytes : 0);
+        PlaylistData inMemory = playlist;
+        if (playlist.songs != null && playlist.songs.size() >= PlaylistCodec.MAPPED_THRESHOLD) {
+            // 大歌单在内存中只保留映射视图，调用方手里已有完整解码的对象
+            try {
+                inMemory = PlaylistCodec.read(playlistFile(playlistId));
+            } catch (IOException e) {
+                Log.w(TAG, "映射歌单缓存失败: " + playlistId, e);
+            }
+        }
+        putInMemory(playlistId, inMemory, entry.bytes);
+        trimDisk();
+        saveIndex();
+        Log.d(TAG, "歌单已缓存: " + playlistId + " (" + source + "), " + bytes / 1024 + "KB, 共 "
+                + entries.size() + " 个歌单 " + diskBytes / 1024 + "KB");
+        return true;
+    }
+
+    /**
+     * 缓存歌单的校验信息
+     *
+     * @param playlistId 歌单ID
+     * @return 校验信息，没有缓存该歌单时返回null
+     */
+    public synchronized Validators getValidators(int playlistId) {
+        Entry entry = entries.get(playlistId);
+        if (entry == null) {
+            return null;
+        }
+        Validators validators = new Validators(entry.etag, entry.lastModified, entry.contentHash);
+        if (!validators.hasHttpValidators() && validators.contentHash == null) {
+            return null;
+        }
+        return validators;
+    }
+
+    /**
+     * 服务器确认歌单未变化：只刷新缓存时间，不重写歌单数据
+     *
+     * @param playlistId 歌单ID
+     */
+    public synchronized void markRevalidated(int playlistId) {
+        Entry entry = entries.get(playlistId);
+        if (entry == null) {
+            return;
+        }
+        entry.savedAt = System.currentTimeMillis();
+        saveIndex();
+        Log.d(TAG, "Playlist cache revalidated: " + playlistId);
+    }
+
+    /**
+     * 获取未过期的缓存歌单
+     *
+     * @param playlistId 歌单ID
+     */
+    public PlaylistData getPlaylist(int playlistId) {
+        return getPlaylist(playlistId, false);
+    }
+
+    /**
+     * 获取缓存的歌单，优先返回内存中已解析的对象
+     *
+     * @param playlistId   歌单ID
+     * @param allowExpired 是否允许返回已过期的缓存（省流量模式下先用旧数据，稍后批量刷新）
+     */
+    public synchronized PlaylistData getPlaylist(int playlistId, boolean allowExpired) {
+        Entry entry = entries.get(playlistId);
+        if (entry == null) {
+            Log.d(TAG, "No playlist found in cache: " + playlistId);
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (!allowExpired && entry.isExpired(now)) {
+            Log.d(TAG, "Playlist cache expired: " + playlistId);
+            return null;
+        }
+        return load(entry, now);
+    }
+
+    /**
+     * 查询缓存的歌单，过期的也返回并标记为stale，供先展示旧数据、后台再刷新
+     * 先查内存中已解析的对象，没有时再读磁盘文件
+     *
+     * @param playlistId 歌单ID
+     * @return 查询结果，没有缓存时返回null
+     */
+    public synchronized Lookup lookup(int playlistId) {
+        Entry entry = entries.get(playlistId);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        PlaylistData playlist = load(entry, now);
+        return playlist != null ? new Lookup(playlist, entry.isExpired(now)) : null;
     }
 
-    public PlaylistData getPlaylist() {
-        // 检查缓存是否过期
-        long cacheTime = sharedPreferences.getLong(CACHE_TIMESTAMP, 0);
-        if (System.currentTimeMillis() - cacheTime > CACHE_DURATION) {
-            Log.d(TAG, "Playlist cache expired");
+    private PlaylistData load(Entry entry, long now) {
+        int playlistId = entry.playlistId;
+        // 访问时间只在内存中更新，随下一次写索引一并保存
+        entry.lastAccess = now;
+
+        PlaylistData cached = memoryCache.get(playlistId);
+        if (cached != null) {
+            return cached;
+        }
+        PlaylistData playlist = readPlaylistFile(playlistId);
+        if (playlist == null) {
+            remove(playlistId);
+            saveIndex();
             return null;
         }
+        putInMemory(playlistId, playlist, entry.bytes);
+        Log.d(TAG, "Playlist loaded from cache: " + playlistId);
+        return playlist;
+    }
+
+    /**
+     * 是否缓存了该歌单（不论是否过期）
+     */
+    public synchronized boolean isCached(int playlistId) {
+        return entries.containsKey(playlistId);
+    }
+
+    /**
+     * 缓存的歌单是否来自用户导入
+     */
+    public synchronized boolean isImported(int playlistId) {
+        Entry entry = entries.get(playlistId);
+        return entry != null && entry.source == Source.IMPORTED;
+    }
+
+    public synchronized boolean isCacheValid(int playlistId) {
+        Entry entry = entries.get(playlistId);
+        return entry != null && !entry.isExpired(System.currentTimeMillis());
+    }
 
-        String playlistJson = sharedPreferences.getString(CACHE_KEY, null);
-        if (playlistJson == null) {
-            Log.d(TAG, "No playlist found in cache");
+    /**
+     * 保存歌单的拼音转写结果，与歌单文件放在一起，随歌单一起淘汰；未缓存的歌单不保存
+     *
+     * @param playlistId 歌单ID
+     * @param signature  歌单内容签名
+     * @param transliterations 每首歌一条转写结果
+     */
+    public void savePinyinIndex(int playlistId, String signature, List<String> transliterations) {
+        synchronized (this) {
+            if (!entries.containsKey(playlistId)) {
+                return;
+            }
+        }
+        File file = pinyinFile(playlistId);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeUTF(signature);
+            out.writeInt(transliterations.size());
+            for (String transliteration : transliterations) {
+                out.writeUTF(transliteration);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save pinyin index: " + playlistId, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        synchronized (this) {
+            // 写入期间歌单被淘汰
+            if (!entries.containsKey(playlistId)) {
+                file.delete();
+                return;
+            }
+        }
+        Log.d(TAG, "Pinyin index saved to cache: " + playlistId);
+    }
+
+    /**
+     * 获取与签名一致的拼音转写结果
+     *
+     * @param playlistId 歌单ID
+     * @param signature  歌单内容签名
+     * @return 转写结果，签名不一致或没有缓存返回null
+     */
+    public List<String> getPinyinIndex(int playlistId, String signature) {
+        File file = pinyinFile(playlistId);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!signature.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(in.readUTF());
+            }
+            return result;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read cached pinyin index: " + playlistId, e);
             return null;
         }
+    }
+
+    public synchronized void clearCache() {
+        for (Integer playlistId : new ArrayList<>(entries.keySet())) {
+            playlistFile(playlistId).delete();
+            legacyJsonFile(playlistId).delete();
+            pinyinFile(playlistId).delete();
+        }
+        entries.clear();
+        memoryCache.clear();
+        diskBytes = 0;
+        memoryBytes = 0;
+        sharedPreferences.edit()
+                .remove(INDEX_KEY)
+                .apply();
+        Log.d(TAG, "Playlist cache cleared");
+    }
+
+    private void putInMemory(int playlistId, PlaylistData playlist, long bytes) {
+        Entry entry = entries.get(playlistId);
+        // 映射的大歌单只在内存中保留文件头和少量已解码的行
+        long cost = playlist.songs instanceof MappedSongList ? MAPPED_MEMORY_COST : bytes;
+        if (entry != null) {
+            entry.memoryCost = cost;
+        }
+        memoryCache.put(playlistId, playlist);
+        recomputeMemoryBytes();
+        Iterator<Map.Entry<Integer, PlaylistData>> iterator = memoryCache.entrySet().iterator();
+        while (memoryBytes > MAX_MEMORY_BYTES && memoryCache.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Integer, PlaylistData> eldest = iterator.next();
+            if (eldest.getKey() == playlistId) {
+                continue;
+            }
+            Entry eldestEntry = entries.get(eldest.getKey());
+            memoryBytes -= eldestEntry != null ? eldestEntry.memoryCost : 0;
+            iterator.remove();
+        }
+    }
 
+    private void recomputeMemoryBytes() {
+        memoryBytes = 0;
+        for (Integer playlistId : memoryCache.keySet()) {
+            Entry entry = entries.get(playlistId);
+            memoryBytes += entry != null ? entry.memoryCost : 0;
+        }
+    }
+
+    /**
+     * 按最近使用时间淘汰，直到磁盘占用不超过上限；最近写入的歌单总是保留
+     */
+    private void trimDisk() {
+        Iterator<Map.Entry<Integer, Entry>> iterator = entries.entrySet().iterator();
+        while (diskBytes > MAX_DISK_BYTES && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Integer, Entry> eldest = iterator.next();
+            playlistFile(eldest.getKey()).delete();
+            legacyJsonFile(eldest.getKey()).delete();
+            pinyinFile(eldest.getKey()).delete();
+            diskBytes -= eldest.getValue().bytes;
+            iterator.remove();
+            if (memoryCache.remove(eldest.getKey()) != null) {
+                memoryBytes -= eldest.getValue().memoryCost;
+            }
+            Log.d(TAG, "淘汰歌单缓存: " + eldest.getKey());
+        }
+    }
+
+    private void remove(int playlistId) {
+        Entry entry = entries.remove(playlistId);
+        if (entry != null) {
+            diskBytes -= entry.bytes;
+            if (memoryCache.remove(playlistId) != null) {
+                memoryBytes -= entry.memoryCost;
+            }
+        }
+        playlistFile(playlistId).delete();
+        legacyJsonFile(playlistId).delete();
+        pinyinFile(playlistId).delete();
+    }
+
+    private PlaylistData readPlaylistFile(int playlistId) {
+        File file = playlistFile(playlistId);
+        if (!file.exists()) {
+            return readLegacyJsonFile(playlistId);
+        }
         try {
-            PlaylistData playlist = gson.fromJson(playlistJson, PlaylistData.class);
-            Log.d(TAG, "Playlist loaded from cache");
+            return PlaylistCodec.read(file);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to decode cached playlist: " + playlistId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取旧版本的JSON文件，并转存为二进制格式
+     */
+    private PlaylistData readLegacyJsonFile(int playlistId) {
+        File file = legacyJsonFile(playlistId);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            PlaylistData playlist = gson.fromJson(reader, PlaylistData.class);
+            Entry entry = entries.get(playlistId);
+            if (playlist != null && entry != null) {
+                entry.bytes = PlaylistCodec.write(playlistFile(playlistId), playlist);
+                file.delete();
+                recomputeDiskBytes();
+                saveIndex();
+            }
             return playlist;
         } catch (Exception e) {
-            Log.e(TAG, "Failed to parse cached playlist", e);
+            Log.e(TAG, "Failed to parse cached playlist: " + playlistId, e);
             return null;
         }
     }
 
-    public boolean isCacheValid() {
-        long cacheTime = sharedPreferences.getLong(CACHE_TIMESTAMP, 0);
-        return System.currentTimeMillis() - cacheTime <= CACHE_DURATION;
+    private File playlistFile(int playlistId) {
+        return new File(cacheDir, playlistId + ".bin");
     }
 
-    public void clearCache() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.remove(CACHE_KEY);
-        editor.remove(CACHE_TIMESTAMP);
+    private File pinyinFile(int playlistId) {
+        return new File(cacheDir, playlistId + ".pinyin");
+    }
+
+    private File legacyJsonFile(int playlistId) {
+        return new File(cacheDir, playlistId + ".json");
+    }
+
+    private void recomputeDiskBytes() {
+        diskBytes = 0;
+        for (Entry entry : entries.values()) {
+            diskBytes += entry.bytes;
+        }
+    }
+
+    /**
+     * 读取索引，按最近使用时间恢复LRU顺序，丢弃文件已不存在的记录
+     */
+    private void loadIndex() {
+        String json = sharedPreferences.getString(INDEX_KEY, null);
+        if (json == null) {
+            return;
+        }
+        List<Entry> saved;
+        try {
+            saved = gson.fromJson(json, new TypeToken<List<Entry>>() {
+            }.getType());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to parse playlist cache index", e);
+            return;
+        }
+        if (saved == null) {
+            return;
+        }
+        saved.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        for (Entry entry : saved) {
+            if (entry.source != null && (playlistFile(entry.playlistId).exists()
+                    || legacyJsonFile(entry.playlistId).exists())) {
+                entries.put(entry.playlistId, entry);
+                diskBytes += entry.bytes;
+            } else {
+                pinyinFile(entry.playlistId).delete();
+            }
+        }
+    }
+
+    private void saveIndex() {
+        sharedPreferences.edit().putString(INDEX_KEY, gson.toJson(new ArrayList<>(entries.values()))).apply();
+    }
+
+    /**
+     * 把旧版本单个歌单的缓存迁移为按ID存储，保留原保存时间和校验信息
+     */
+    private void migrateLegacyCache() {
+        if (sharedPreferences.contains(LEGACY_PINYIN_INDEX_KEY)) {
+            sharedPreferences.edit()
+                    .remove(LEGACY_PINYIN_INDEX_KEY)
+                    .remove(LEGACY_PINYIN_SIGNATURE_KEY)
+                    .apply();
+        }
+        String legacyJson = sharedPreferences.getString(LEGACY_CACHE_KEY, null);
+        if (legacyJson == null) {
+            return;
+        }
+        try {
+            PlaylistData playlist = gson.fromJson(legacyJson, PlaylistData.class);
+            if (playlist != null && !entries.containsKey(playlist.id)) {
+                Validators validators = null;
+                if (sharedPreferences.getInt(LEGACY_VALIDATOR_KEYS[0], 0) == playlist.id) {
+                    validators = new Validators(
+                            sharedPreferences.getString(LEGACY_VALIDATOR_KEYS[1], null),
+                            sharedPreferences.getString(LEGACY_VALIDATOR_KEYS[2], null),
+                            sharedPreferences.getString(LEGACY_VALIDATOR_KEYS[3], null));
+                }
+                save(playlist.id, playlist, Source.NETWORK, validators,
+                        sharedPreferences.getLong(LEGACY_CACHE_TIMESTAMP, 0));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to migrate legacy playlist cache", e);
+        }
+        SharedPreferences.Editor editor = sharedPreferences.edit()
+                .remove(LEGACY_CACHE_KEY)
+                .remove(LEGACY_CACHE_TIMESTAMP);
+        for (String key : LEGACY_VALIDATOR_KEYS) {
+            editor.remove(key);
+        }
         editor.apply();
-        Log.d(TAG, "Playlist cache cleared");
     }
 }
-
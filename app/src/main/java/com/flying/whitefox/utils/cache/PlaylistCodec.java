@@ -0,0 +1,384 @@
+package com.flying.whitefox.utils.cache;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 歌单二进制格式编解码
+ * 格式（整数均为变长编码）：
+ * <pre>
+ * 魔数"WFPL" | 版本(1字节)
+ * 字符串表：数量 | 原始字节数 | 压缩后字节数 | Deflate压缩的（每项 UTF-8字节数 + 字节）
+ * 歌单：ID(zigzag) | 名称引用 | 歌曲数
+ * 每首歌：ID、歌名、歌手、专辑、封面 五个字符串引用
+ * </pre>
+ * 字符串引用为字符串表下标加一，0表示null。相同的封面地址、歌手和专辑名只存一份，
+ * 字符串表整体压缩，歌曲记录只剩几个字节的引用。
+ * <p>
+ * 歌曲数不少于{@link #MAPPED_THRESHOLD}的歌单使用版本2的定长布局（整数均为4字节）：
+ * <pre>
+ * 魔数 | 版本(1字节) | 填充(3字节) | 歌单ID | 名称引用 | 歌曲数 | 字符串数
+ * 歌曲表：每首歌5个字符串引用，共20字节，第i首位于固定偏移
+ * 字符串偏移表：字符串数+1个偏移，相对于字符串数据开头
+ * 字符串数据：未压缩的UTF-8
+ * </pre>
+ * 读取时直接映射文件，歌曲在访问时才解码，见{@link MappedSongList}
+ */
+public final class PlaylistCodec {
+    private static final int MAGIC = 0x5746504C; // "WFPL"
+    static final int VERSION = 1;
+    static final int MAPPED_VERSION = 2;
+    static final int MAPPED_THRESHOLD = 2000;       // 达到该歌曲数时使用映射布局
+    static final int SONG_FIELD_COUNT = 5;
+    static final int MAPPED_HEADER_SIZE = 24;
+
+    private PlaylistCodec() {
+    }
+
+    /**
+     * 编码歌单
+     */
+    public static ByteBuffer encode(PlaylistData playlist) {
+        List<PlaylistData.Song> songs = playlist.songs != null ? playlist.songs : new ArrayList<>();
+        StringPool pool = new StringPool();
+        int nameRef = pool.intern(playlist.name);
+        int[] refs = internSongs(pool, songs);
+
+        int rawSize = pool.totalBytes;
+        for (byte[] bytes : pool.strings) {
+            rawSize += varintSize(bytes.length);
+        }
+        ByteBuffer raw = ByteBuffer.allocate(rawSize);
+        for (byte[] bytes : pool.strings) {
+            putVarint(raw, bytes.length);
+            raw.put(bytes);
+        }
+        byte[] compressed = deflate(raw.array());
+
+        // 先算出准确长度，一次分配
+        int size = 5 + varintSize(pool.strings.size()) + varintSize(rawSize) + varintSize(compressed.length)
+                + compressed.length + varintSize(zigzag(playlist.id)) + varintSize(nameRef) + varintSize(songs.size());
+        for (int ref : refs) {
+            size += varintSize(ref);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        putVarint(buffer, pool.strings.size());
+        putVarint(buffer, rawSize);
+        putVarint(buffer, compressed.length);
+        buffer.put(compressed);
+        putVarint(buffer, zigzag(playlist.id));
+        putVarint(buffer, nameRef);
+        putVarint(buffer, songs.size());
+        for (int ref : refs) {
+            putVarint(buffer, ref);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 解码歌单
+     *
+     * @throws IOException 魔数、版本不符或数据不完整
+     */
+    public static PlaylistData decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("不是歌单缓存文件");
+            }
+            int version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("不支持的歌单缓存版本: " + version);
+            }
+            String[] strings = new String[readCount(buffer)];
+            int rawSize = getVarint(buffer);
+            int compressedSize = readCount(buffer);
+            ByteBuffer raw = inflate(buffer, compressedSize, rawSize);
+            for (int i = 0; i < strings.length; i++) {
+                int length = readCount(raw);
+                strings[i] = readString(raw, length);
+            }
+
+            PlaylistData playlist = new PlaylistData();
+            playlist.id = unzigzag(getVarint(buffer));
+            playlist.name = lookup(strings, getVarint(buffer));
+            int songCount = readCount(buffer);
+            playlist.songs = new ArrayList<>(songCount);
+            for (int i = 0; i < songCount; i++) {
+                PlaylistData.Song song = new PlaylistData.Song();
+                song.id = lookup(strings, getVarint(buffer));
+                song.name = lookup(strings, getVarint(buffer));
+                song.ar_name = lookup(strings, getVarint(buffer));
+                song.al_name = lookup(strings, getVarint(buffer));
+                song.pic = lookup(strings, getVarint(buffer));
+                playlist.songs.add(song);
+            }
+            return playlist;
+        } catch (RuntimeException e) {
+            // 数据截断或引用越界
+            throw new IOException("歌单缓存数据损坏", e);
+        }
+    }
+
+    /**
+     * 按映射布局编码
+     */
+    static ByteBuffer encodeMapped(PlaylistData playlist) {
+        List<PlaylistData.Song> songs = playlist.songs != null ? playlist.songs : new ArrayList<>();
+        StringPool pool = new StringPool();
+        int nameRef = pool.intern(playlist.name);
+        int[] refs = internSongs(pool, songs);
+        int stringCount = pool.strings.size();
+
+        ByteBuffer buffer = ByteBuffer.allocate(MAPPED_HEADER_SIZE + refs.length * 4
+                + (stringCount + 1) * 4 + pool.totalBytes);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) MAPPED_VERSION);
+        buffer.put(new byte[3]);
+        buffer.putInt(playlist.id);
+        buffer.putInt(nameRef);
+        buffer.putInt(songs.size());
+        buffer.putInt(stringCount);
+        for (int ref : refs) {
+            buffer.putInt(ref);
+        }
+        int offset = 0;
+        for (byte[] bytes : pool.strings) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] bytes : pool.strings) {
+            buffer.put(bytes);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int[] internSongs(StringPool pool, List<PlaylistData.Song> songs) {
+        int[] refs = new int[songs.size() * SONG_FIELD_COUNT];
+        for (int i = 0; i < songs.size(); i++) {
+            PlaylistData.Song song = songs.get(i);
+            int base = i * SONG_FIELD_COUNT;
+            refs[base] = pool.intern(song.id);
+            refs[base + 1] = pool.intern(song.name);
+            refs[base + 2] = pool.intern(song.ar_name);
+            refs[base + 3] = pool.intern(song.al_name);
+            refs[base + 4] = pool.intern(song.pic);
+        }
+        return refs;
+    }
+
+    /**
+     * 通过文件通道写入，先写临时文件再改名，写到一半不会留下损坏的缓存；
+     * 大歌单使用映射布局
+     *
+     * @return 写入的字节数
+     */
+    public static long write(File file, PlaylistData playlist) throws IOException {
+        boolean mapped = playlist.songs != null && playlist.songs.size() >= MAPPED_THRESHOLD;
+        ByteBuffer buffer = mapped ? encodeMapped(playlist) : encode(playlist);
+        int length = buffer.remaining();
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile output = new RandomAccessFile(temp, "rw");
+             FileChannel channel = output.getChannel()) {
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("歌单缓存文件改名失败: " + file);
+        }
+        return length;
+    }
+
+    /**
+     * 通过文件通道读取；映射布局的文件只读取文件头，歌曲列表在访问时才解码
+     */
+    public static PlaylistData read(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("歌单缓存文件过大: " + size);
+            }
+            if (size >= MAPPED_HEADER_SIZE && input.readInt() == MAGIC && input.read() == MAPPED_VERSION) {
+                // 关闭通道后映射仍然有效
+                return decodeMapped(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            channel.position(0);
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("歌单缓存文件不完整");
+                }
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * 解析映射布局的文件头，歌曲列表为按需解码的视图
+     */
+    static PlaylistData decodeMapped(ByteBuffer buffer) throws IOException {
+        try {
+            PlaylistData playlist = new PlaylistData();
+            playlist.id = buffer.getInt(8);
+            MappedSongList songs = MappedSongList.open(buffer, buffer.getInt(16), buffer.getInt(20));
+            playlist.name = songs.getString(buffer.getInt(12));
+            playlist.songs = songs;
+            return playlist;
+        } catch (RuntimeException e) {
+            // 文件头截断或名称引用越界
+            throw new IOException("歌单缓存数据损坏", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                output.write(chunk, 0, length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer buffer, int compressedSize, int rawSize) throws IOException {
+        // 压缩比不可能超过约1000倍，超出说明长度字段已损坏
+        if (rawSize < 0 || rawSize > compressedSize * 1032L + 64) {
+            throw new IOException("歌单缓存数据损坏");
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), compressedSize);
+            byte[] raw = new byte[rawSize];
+            int offset = 0;
+            while (offset < rawSize) {
+                int length = inflater.inflate(raw, offset, rawSize - offset);
+                if (length == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("歌单缓存数据不完整");
+                }
+                offset += length;
+            }
+            buffer.position(buffer.position() + compressedSize);
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException e) {
+            throw new IOException("歌单缓存数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String lookup(String[] strings, int ref) {
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * 读取数量或长度，不可能超过剩余字节数，以免损坏的数据导致分配过大的数组
+     */
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int count = getVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("歌单缓存数据损坏");
+        }
+        return count;
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("变长整数过长");
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 字符串常量池：相同的字符串只保存一次
+     */
+    private static class StringPool {
+        final List<byte[]> strings = new ArrayList<>();
+        final Map<String, Integer> refs = new HashMap<>();
+        int totalBytes = 0;
+
+        int intern(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer ref = refs.get(value);
+            if (ref == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                strings.add(bytes);
+                totalBytes += bytes.length;
+                ref = strings.size();
+                refs.put(value, ref);
+            }
+            return ref;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.flying.whitefox.utils.cache;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.QualityLevel;
+import com.flying.whitefox.data.model.music.SongData;
+import com.google.gson.Gson;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 歌曲播放链接缓存（内存 + 磁盘）
+ * 以歌曲ID和音质为键，过期时间优先从签名URL中解析，解析不到时使用保守的默认值
+ */
+public class SongUrlCacheManager {
+    private static final String TAG = "SongUrlCacheManager";
+    private static final String PREF_NAME = "song_url_cache";
+    private static final String KEY_PREFIX = "song_url_";
+    private static final long DEFAULT_TTL = 10 * 60 * 1000; // 无法解析过期时间时默认10分钟
+    private static final long MAX_TTL = 6 * 60 * 60 * 1000; // 最长6小时
+    private static final long EXPIRY_MARGIN = 60 * 1000; // 提前1分钟视为过期，避免播放到一半失效
+
+    // 网易云CDN链接路径中的过期时间，例如 /20240101123456/xxxx/...
+    private static final Pattern PATH_EXPIRY_PATTERN = Pattern.compile("/(\\d{14})/");
+
+    private final Map<String, CacheEntry> memoryCache = new ConcurrentHashMap<>();
+    private final SharedPreferences sharedPreferences;
+    private final Gson gson = new Gson();
+
+    private static class CacheEntry {
+        SongData songData;
+        long expiresAt;
+
+        CacheEntry(SongData songData, long expiresAt) {
+            this.songData = songData;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    public SongUrlCacheManager(Context context) {
+        sharedPreferences = context != null
+                ? context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE)
+                : null;
+    }
+
+    /**
+     * 获取缓存的歌曲信息
+     *
+     * @param songId 歌曲ID
+     * @param level  音质级别
+     * @return 未过期的歌曲信息，不存在或已过期返回null
+     */
+    public SongData get(String songId, QualityLevel level) {
+        String key = buildKey(songId, level);
+        CacheEntry entry = memoryCache.get(key);
+        if (entry == null && sharedPreferences != null) {
+            String json = sharedPreferences.getString(key, null);
+            if (json != null) {
+                try {
+                    entry = gson.fromJson(json, CacheEntry.class);
+                } catch (Exception e) {
+                    Log.e(TAG, "解析缓存的歌曲链接失败", e);
+                }
+                if (entry != null) {
+                    memoryCache.put(key, entry);
+                }
+            }
+        }
+
+        if (entry == null || entry.songData == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            Log.d(TAG, "歌曲链接缓存已过期: " + key);
+            remove(key);
+            return null;
+        }
+        return entry.songData;
+    }
+
+    /**
+     * 缓存歌曲信息
+     *
+     * @param songId   歌曲ID
+     * @param level    音质级别
+     * @param songData 歌曲信息
+     */
+    public void put(String songId, QualityLevel level, SongData songData) {
+        if (songData == null || songData.getUrl() == null || songData.getUrl().isEmpty()) {
+            return;
+        }
+        long expiresAt = resolveExpiresAt(songData.getUrl());
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        String key = buildKey(songId, level);
+        CacheEntry entry = new CacheEntry(songData, expiresAt);
+        memoryCache.put(key, entry);
+        if (sharedPreferences != null) {
+            sharedPreferences.edit().putString(key, gson.toJson(entry)).apply();
+        }
+        Log.d(TAG, "缓存歌曲链接: " + key + ", 有效期至: " + expiresAt);
+    }
+
+    /**
+     * 使指定播放链接对应的缓存失效（MediaPlayer播放出错时调用）
+     *
+     * @param url 播放链接
+     */
+    public void invalidateByUrl(String url) {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<String, CacheEntry>> iterator = memoryCache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CacheEntry> item = iterator.next();
+            SongData songData = item.getValue().songData;
+            if (songData != null && (url.equals(songData.getUrl()) || url.equals(songData.getSecureUrl()))) {
+                iterator.remove();
+                if (sharedPreferences != null) {
+                    sharedPreferences.edit().remove(item.getKey()).apply();
+                }
+                Log.d(TAG, "歌曲链接缓存已失效: " + item.getKey());
+            }
+        }
+    }
+
+    public void invalidate(String songId, QualityLevel level) {
+        remove(buildKey(songId, level));
+    }
+
+    public void clearCache() {
+        memoryCache.clear();
+        if (sharedPreferences != null) {
+            sharedPreferences.edit().clear().apply();
+        }
+        Log.d(TAG, "歌曲链接缓存已清空");
+    }
+
+    private void remove(String key) {
+        memoryCache.remove(key);
+        if (sharedPreferences != null) {
+            sharedPreferences.edit().remove(key).apply();
+        }
+    }
+
+    private static String buildKey(String songId, QualityLevel level) {
+        return KEY_PREFIX + songId + "_" + level.getValue();
+    }
+
+    /**
+     * 根据签名URL计算过期时间
+     *
+     * @param url 播放链接
+     * @return 过期时间戳（毫秒）
+     */
+    static long resolveExpiresAt(String url) {
+        long now = System.currentTimeMillis();
+        long expiresAt = parseUrlExpiry(url);
+        if (expiresAt <= 0) {
+            return now + DEFAULT_TTL;
+        }
+        return Math.min(expiresAt - EXPIRY_MARGIN, now + MAX_TTL);
+    }
+
+    private static long parseUrlExpiry(String url) {
+        try {
+            Uri uri = Uri.parse(url);
+            // 常见的过期参数（秒级时间戳）
+            String[] expiryParams = {"expires", "Expires", "expire", "e"};
+            for (String param : expiryParams) {
+                String value = uri.getQueryParameter(param);
+                if (value != null && value.matches("\\d{10}")) {
+                    return Long.parseLong(value) * 1000;
+                }
+            }
+            // auth_key=时间戳-随机数-uid-md5
+            String authKey = uri.getQueryParameter("auth_key");
+            if (authKey != null) {
+                String timestamp = authKey.split("-")[0];
+                if (timestamp.matches("\\d{10}")) {
+                    return Long.parseLong(timestamp) * 1000;
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "解析链接参数失败: " + url, e);
+        }
+
+        Matcher matcher = PATH_EXPIRY_PATTERN.matcher(url);
+        if (matcher.find()) {
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
+            try {
+                Date date = format.parse(matcher.group(1));
+                if (date != null) {
+                    return date.getTime();
+                }
+            } catch (ParseException e) {
+                Log.w(TAG, "解析链接过期时间失败: " + url, e);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,642 @@
+package com.flying.whitefox.utils.download;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+import com.flying.whitefox.data.model.music.QualityLevel;
+import com.flying.whitefox.data.model.music.SongData;
+import com.flying.whitefox.service.MusicService;
+import com.flying.whitefox.utils.network.DataSaverManager;
+import com.flying.whitefox.utils.network.HttpClientManager;
+import com.flying.whitefox.utils.network.RequestRegistry;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 离线下载管理
+ * 把整个歌单下载到本地：批量解析播放链接，有限并发下载，中断后用Range请求从已下载的位置续传，
+ * 下载完成后按SongData.size校验文件大小。下载记录持久化，应用重启后在不计流量的网络下（或未开启省流量时）
+ * 自动继续未完成的下载，用户暂停的下载只在重新点击下载时继续；已下载的歌曲播放时优先使用本地文件
+ */
+public class OfflineDownloadManager {
+    private static final String TAG = "OfflineDownloadManager";
+    private static final String PREF_NAME = "offline_downloads";
+    private static final String KEY_RECORDS = "records";
+    private static final String DOWNLOAD_DIR_NAME = "offline_music";
+    private static final String COMPLETE_SUFFIX = ".audio";
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private static final int MAX_CONCURRENT_DOWNLOADS = 3; // 同时下载的歌曲数
+    private static final int MAX_ATTEMPTS = 2;             // 链接过期或校验失败时重新解析链接重试的次数
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL = 256 * 1024; // 每下载256KB通知一次进度
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    /**
+     * 下载状态
+     */
+    public enum State {
+        PENDING,     // 等待或正在下载
+        PAUSED,      // 用户暂停，保留部分文件，重新下载时续传，启动时不自动继续
+        COMPLETED,   // 已下载并校验通过
+        FAILED       // 下载失败，可重新发起
+    }
+
+    /**
+     * 持久化的下载记录，已下载的字节数以部分文件长度为准
+     */
+    private static class DownloadRecord {
+        String songId;
+        String quality;
+        String name;
+        String ar_name;
+        String al_name;
+        String pic;
+        long expectedSize;  // 来自SongData.size，未知为0
+        State state = State.PENDING;
+    }
+
+    /**
+     * 下载进度回调，在主线程执行
+     */
+    public interface OnDownloadListener {
+        void onProgress(String songId, long downloadedBytes, long totalBytes);
+
+        void onSongCompleted(String songId);
+
+        void onSongFailed(String songId, String reason);
+    }
+
+    private static OfflineDownloadManager instance;
+
+    private final Map<String, DownloadRecord> records = new LinkedHashMap<>();
+    private final List<OnDownloadListener> listeners = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Gson gson = new Gson();
+    private final RequestRegistry requestRegistry = new RequestRegistry();
+    // 正在解析链接或下载中的歌曲；不在其中的PENDING记录是中断或启动时未恢复的，重新下载时继续
+    private final Set<String> activeDownloads = new HashSet<>();
+    private int pauseGeneration = 0; // 每次暂停加一，暂停前排队的解析和下载据此放弃
+    private ExecutorService executor;
+    private MusicService musicService;
+    private SharedPreferences sharedPreferences;
+    private File downloadDir;
+    private boolean initialized = false;
+
+    private OfflineDownloadManager() {
+    }
+
+    public static synchronized OfflineDownloadManager getInstance() {
+        if (instance == null) {
+            instance = new OfflineDownloadManager();
+        }
+        return instance;
+    }
+
+    /**
+     * 读取下载记录并继续未完成的下载，重复调用只生效一次
+     *
+     * @param context      上下文
+     * @param musicService 播放服务使用的MusicService，解析链接时与播放共享缓存和请求合并
+     */
+    public synchronized void init(Context context, MusicService musicService) {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        Context appContext = context.getApplicationContext();
+        sharedPreferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        downloadDir = new File(appContext.getFilesDir(), DOWNLOAD_DIR_NAME);
+        if (!downloadDir.exists() && !downloadDir.mkdirs()) {
+            Log.w(TAG, "创建下载目录失败: " + downloadDir);
+        }
+        this.musicService = musicService;
+        executor = Executors.newFixedThreadPool(MAX_CONCURRENT_DOWNLOADS, r -> {
+            Thread thread = new Thread(r, "OfflineDownload");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        loadRecords();
+        List<DownloadRecord> unfinished = new ArrayList<>();
+        for (DownloadRecord record : records.values()) {
+            if (record.state == State.COMPLETED && !completeFile(record).exists()) {
+                // 文件被清理，重新下载
+                record.state = State.PENDING;
+            }
+            if (record.state == State.PENDING) {
+                unfinished.add(record);
+            }
+        }
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        DataSaverManager dataSaver = DataSaverManager.getInstance();
+        if (dataSaver.isEnabled() && dataSaver.isMetered()) {
+            // 省流量模式下不在计费网络上自动下载，等用户重新点击下载或下次在其他网络下启动
+            Log.d(TAG, "计费网络下不自动继续下载: " + unfinished.size() + " 首");
+            return;
+        }
+        Log.d(TAG, "继续未完成的下载: " + unfinished.size() + " 首");
+        startDownloads(unfinished);
+    }
+
+    public synchronized boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * 下载整个歌单，已下载和正在下载的歌曲跳过，暂停的歌曲按原音质继续
+     *
+     * @param playlist 歌单
+     * @param level    音质
+     * @return 新加入或继续下载的歌曲数
+     */
+    public int downloadPlaylist(PlaylistData playlist, QualityLevel level) {
+        if (playlist == null || playlist.songs == null) {
+            return 0;
+        }
+        List<DownloadRecord> added = new ArrayList<>();
+        synchronized (this) {
+            if (!initialized) {
+                Log.w(TAG, "下载管理未初始化");
+                return 0;
+            }
+            for (PlaylistData.Song song : playlist.songs) {
+                if (song.id == null || song.id.isEmpty() || song.id.equals("0")) {
+                    continue;
+                }
+                DownloadRecord record = records.get(song.id);
+                if (record != null && (record.state == State.PAUSED
+                        || (record.state == State.PENDING && !activeDownloads.contains(song.id)))) {
+                    // 暂停或中断过的下载，从部分文件续传
+                    record.state = State.PENDING;
+                    added.add(record);
+                    continue;
+                }
+                if (record != null && record.state != State.FAILED) {
+                    continue;
+                }
+                record = new DownloadRecord();
+                record.songId = song.id;
+                record.quality = level.getValue();
+                record.name = song.name;
+                record.ar_name = song.ar_name;
+                record.al_name = song.al_name;
+                record.pic = song.pic;
+                records.put(song.id, record);
+                added.add(record);
+            }
+            saveRecords();
+        }
+        Log.d(TAG, "歌单 " + playlist.name + " 加入下载: " + added.size() + " 首");
+        startDownloads(added);
+        return added.size();
+    }
+
+    /**
+     * 已下载完成的本地文件
+     *
+     * @param songId 歌曲ID
+     * @return 本地文件，未下载返回null
+     */
+    public synchronized File getOfflineFile(String songId) {
+        DownloadRecord record = songId != null ? records.get(songId) : null;
+        if (record == null || record.state != State.COMPLETED) {
+            return null;
+        }
+        File file = completeFile(record);
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * 已下载歌曲的信息，播放时无需解析链接
+     *
+     * @param songId 歌曲ID
+     * @return 歌曲信息（url为本地文件路径），未下载返回null
+     */
+    public synchronized SongData getOfflineSongData(String songId) {
+        File file = getOfflineFile(songId);
+        if (file == null) {
+            return null;
+        }
+        DownloadRecord record = records.get(songId);
+        SongData songData = new SongData();
+        songData.status = 200;
+        songData.name = record.name;
+        songData.ar_name = record.ar_name;
+        songData.al_name = record.al_name;
+        songData.pic = record.pic;
+        songData.level = record.quality;
+        songData.size = String.valueOf(file.length());
+        songData.url = file.getAbsolutePath();
+        return songData;
+    }
+
+    public synchronized State getState(String songId) {
+        DownloadRecord record = records.get(songId);
+        return record != null ? record.state : null;
+    }
+
+    /**
+     * 歌单中已下载的歌曲数
+     */
+    public synchronized int getDownloadedCount(PlaylistData playlist) {
+        int count = 0;
+        if (playlist != null && playlist.songs != null) {
+            for (PlaylistData.Song song : playlist.songs) {
+                DownloadRecord record = records.get(song.id);
+                if (record != null && record.state == State.COMPLETED) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 暂停所有下载，已下载的部分保留；暂停状态持久化，重启后不会自动继续，重新下载时续传
+     */
+    public void pauseAll() {
+        synchronized (this) {
+            pauseGeneration++;
+            activeDownloads.clear();
+            for (DownloadRecord record : records.values()) {
+                if (record.state == State.PENDING) {
+                    record.state = State.PAUSED;
+                }
+            }
+            if (initialized) {
+                saveRecords();
+            }
+        }
+        requestRegistry.cancelGroup(RequestRegistry.RequestGroup.DOWNLOAD);
+        Log.d(TAG, "已暂停所有下载");
+    }
+
+    /**
+     * 删除已下载的歌曲
+     */
+    public void delete(String songId) {
+        DownloadRecord record;
+        synchronized (this) {
+            record = records.remove(songId);
+            saveRecords();
+        }
+        if (record != null) {
+            completeFile(record).delete();
+            partialFile(record).delete();
+        }
+    }
+
+    public void addListener(OnDownloadListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(OnDownloadListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * 批量解析播放链接，每首歌的链接就绪后提交下载
+     */
+    private void startDownloads(List<DownloadRecord> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int generation;
+        synchronized (this) {
+            generation = pauseGeneration;
+            for (DownloadRecord record : pending) {
+                activeDownloads.add(record.songId);
+            }
+        }
+        // 按音质分组批量解析
+        Map<String, List<String>> idsByQuality = new LinkedHashMap<>();
+        for (DownloadRecord record : pending) {
+            List<String> ids = idsByQuality.get(record.quality);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByQuality.put(record.quality, ids);
+            }
+            ids.add(record.songId);
+        }
+        for (Map.Entry<String, List<String>> entry : idsByQuality.entrySet()) {
+            QualityLevel level = QualityLevel.fromValue(entry.getKey(), QualityLevel.STANDARD);
+            Map<String, CompletableFuture<SongData>> futures = musicService.getSongUrls(entry.getValue(), level);
+            for (Map.Entry<String, CompletableFuture<SongData>> future : futures.entrySet()) {
+                String songId = future.getKey();
+                future.getValue().whenComplete((songData, throwable) -> {
+                    DownloadRecord record = getRecord(songId);
+                    if (record == null || isPaused(generation)) {
+                        return;
+                    }
+                    if (songData == null || songData.getSecureUrl() == null || songData.getSecureUrl().isEmpty()) {
+                        markFailed(record, "获取播放链接失败");
+                        return;
+                    }
+                    executor.execute(() -> download(record, songData, level, 1, generation));
+                });
+            }
+        }
+    }
+
+    private void download(DownloadRecord record, SongData songData, QualityLevel level, int attempt,
+                          int generation) {
+        if (getRecord(record.songId) != record) {
+            // 下载期间已被删除
+            markInactive(record);
+            return;
+        }
+        if (isPaused(generation)) {
+            // 排队期间已暂停
+            return;
+        }
+        synchronized (this) {
+            if (record.expectedSize <= 0) {
+                record.expectedSize = songData.getSizeBytes();
+                saveRecords();
+            }
+        }
+
+        RequestRegistry.CancellationToken token = requestRegistry.newToken(RequestRegistry.RequestGroup.DOWNLOAD,
+                record.songId);
+        String url = songData.getSecureUrl();
+        boolean retrying = false;
+        try {
+            DownloadResult result = transfer(record, url, token);
+            switch (result) {
+                case COMPLETED:
+                    commit(record);
+                    break;
+                case SIZE_MISMATCH:
+                case URL_EXPIRED:
+                    if (attempt < MAX_ATTEMPTS) {
+                        // 链接可能已过期，重新解析后从头或续传
+                        Log.w(TAG, "下载未通过校验，重新获取链接: " + record.songId + " (" + result + ")");
+                        retrying = true;
+                        musicService.invalidateSongUrl(url);
+                        musicService.getSongUrl(record.songId, level).whenComplete((retryData, throwable) -> {
+                            if (retryData == null || retryData.getSecureUrl() == null) {
+                                markFailed(record, "获取播放链接失败");
+                            } else {
+                                executor.execute(() -> download(record, retryData, level, attempt + 1, generation));
+                            }
+                        });
+                    } else {
+                        markFailed(record, result == DownloadResult.SIZE_MISMATCH ? "文件大小校验失败" : "播放链接失效");
+                    }
+                    break;
+                case CANCELLED:
+                    Log.d(TAG, "下载已暂停: " + record.songId + ", 已下载 " + partialFile(record).length() + " 字节");
+                    break;
+            }
+        } catch (IOException e) {
+            if (token.isCancelled()) {
+                Log.d(TAG, "下载已暂停: " + record.songId);
+            } else {
+                Log.e(TAG, "下载失败: " + record.songId, e);
+                markFailed(record, e.getMessage());
+            }
+        } finally {
+            requestRegistry.release(token);
+            if (!retrying) {
+                markInactive(record);
+            }
+        }
+    }
+
+    private synchronized boolean isPaused(int generation) {
+        return generation != pauseGeneration;
+    }
+
+    private synchronized void markInactive(DownloadRecord record) {
+        activeDownloads.remove(record.songId);
+    }
+
+    private enum DownloadResult {
+        COMPLETED,
+        SIZE_MISMATCH,
+        URL_EXPIRED,
+        CANCELLED
+    }
+
+    /**
+     * 从部分文件末尾续传，服务器不支持Range时从头下载
+     */
+    private DownloadResult transfer(DownloadRecord record, String url, RequestRegistry.CancellationToken token)
+            throws IOException {
+        File partial = partialFile(record);
+        long offset = partial.exists() ? partial.length() : 0;
+        long expected = record.expectedSize;
+        if (expected > 0 && offset == expected) {
+            return DownloadResult.COMPLETED;
+        }
+        if (expected > 0 && offset > expected) {
+            partial.delete();
+            offset = 0;
+        }
+
+        Request.Builder builder = new Request.Builder().url(url);
+        if (offset > 0) {
+            builder.addHeader("Range", "bytes=" + offset + "-");
+        }
+        Call call = HttpClientManager.getInstance().getClient().newCall(builder.build());
+        if (!token.register(call)) {
+            return DownloadResult.CANCELLED;
+        }
+        try (Response response = call.execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == 416) {
+                // 部分文件与远程文件不一致，丢弃重下
+                partial.delete();
+                return DownloadResult.SIZE_MISMATCH;
+            }
+            if (response.code() == 403 || response.code() == 404 || response.code() == 410) {
+                return DownloadResult.URL_EXPIRED;
+            }
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("HTTP " + response.code());
+            }
+
+            long total;
+            boolean append;
+            if (response.code() == 206) {
+                Matcher matcher = CONTENT_RANGE_PATTERN.matcher(response.header("Content-Range", ""));
+                if (!matcher.matches() || Long.parseLong(matcher.group(1)) != offset) {
+                    throw new IOException("Content-Range不匹配: " + response.header("Content-Range"));
+                }
+                total = Long.parseLong(matcher.group(3));
+                append = true;
+            } else {
+                // 服务器忽略了Range，从头写入
+                total = body.contentLength();
+                append = false;
+                offset = 0;
+            }
+            if (expected > 0 && total > 0 && total != expected) {
+                // 链接指向的文件和SongData.size不符，不再续传到这份数据上
+                partial.delete();
+                return DownloadResult.SIZE_MISMATCH;
+            }
+            long finalSize = expected > 0 ? expected : total;
+
+            long downloaded = offset;
+            long lastNotified = downloaded;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = body.byteStream();
+                 FileOutputStream out = new FileOutputStream(partial, append)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (token.isCancelled()) {
+                        return DownloadResult.CANCELLED;
+                    }
+                    out.write(buffer, 0, read);
+                    downloaded += read;
+                    if (downloaded - lastNotified >= PROGRESS_INTERVAL) {
+                        lastNotified = downloaded;
+                        notifyProgress(record.songId, downloaded, finalSize);
+                    }
+                }
+            }
+            if (finalSize > 0 && partial.length() != finalSize) {
+                partial.delete();
+                return DownloadResult.SIZE_MISMATCH;
+            }
+            if (record.expectedSize <= 0 && finalSize > 0) {
+                synchronized (this) {
+                    record.expectedSize = finalSize;
+                }
+            }
+            notifyProgress(record.songId, downloaded, finalSize);
+            return DownloadResult.COMPLETED;
+        }
+    }
+
+    private void commit(DownloadRecord record) {
+        File partial = partialFile(record);
+        File complete = completeFile(record);
+        if (complete.exists() && !complete.delete()) {
+            markFailed(record, "无法替换已有文件");
+            return;
+        }
+        if (!partial.renameTo(complete)) {
+            markFailed(record, "保存文件失败");
+            return;
+        }
+        synchronized (this) {
+            record.state = State.COMPLETED;
+            saveRecords();
+        }
+        Log.d(TAG, "下载完成: " + record.songId + ", " + complete.length() / 1024 + "KB");
+        postToListeners(listener -> listener.onSongCompleted(record.songId));
+    }
+
+    private void markFailed(DownloadRecord record, String reason) {
+        synchronized (this) {
+            if (records.get(record.songId) != record) {
+                return;
+            }
+            record.state = State.FAILED;
+            activeDownloads.remove(record.songId);
+            saveRecords();
+        }
+        Log.w(TAG, "下载失败: " + record.songId + ", " + reason);
+        postToListeners(listener -> listener.onSongFailed(record.songId, reason));
+    }
+
+    private void notifyProgress(String songId, long downloaded, long total) {
+        postToListeners(listener -> listener.onProgress(songId, downloaded, total));
+    }
+
+    private interface ListenerAction {
+        void run(OnDownloadListener listener);
+    }
+
+    private void postToListeners(ListenerAction action) {
+        List<OnDownloadListener> snapshot;
+        synchronized (listeners) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            snapshot = new ArrayList<>(listeners);
+        }
+        mainHandler.post(() -> {
+            for (OnDownloadListener listener : snapshot) {
+                action.run(listener);
+            }
+        });
+    }
+
+    private synchronized DownloadRecord getRecord(String songId) {
+        return records.get(songId);
+    }
+
+    private File completeFile(DownloadRecord record) {
+        return new File(downloadDir, fileName(record) + COMPLETE_SUFFIX);
+    }
+
+    private File partialFile(DownloadRecord record) {
+        return new File(downloadDir, fileName(record) + PARTIAL_SUFFIX);
+    }
+
+    private static String fileName(DownloadRecord record) {
+        return (record.songId + "_" + record.quality).replaceAll("[^A-Za-z0-9_\\-]", "-");
+    }
+
+    private void loadRecords() {
+        String json = sharedPreferences.getString(KEY_RECORDS, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            List<DownloadRecord> saved = gson.fromJson(json, new TypeToken<List<DownloadRecord>>() {
+            }.getType());
+            if (saved != null) {
+                for (DownloadRecord record : saved) {
+                    if (record != null && record.songId != null) {
+                        records.put(record.songId, record);
+                    }
+                }
+            }
+            Log.d(TAG, "读取下载记录: " + records.size() + " 首");
+        } catch (Exception e) {
+            Log.e(TAG, "解析下载记录失败", e);
+        }
+    }
+
+    private void saveRecords() {
+        sharedPreferences.edit()
+                .putString(KEY_RECORDS, gson.toJson(new ArrayList<>(records.values())))
+                .apply();
+    }
+}
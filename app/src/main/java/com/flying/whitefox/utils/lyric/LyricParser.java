@@ -0,0 +1,210 @@
+package com.flying.whitefox.utils.lyric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LRC歌词解析
+ * 支持一行多个时间标签（[00:12.30][01:05.10]歌词）、两位或三位小数、[offset:]偏移，
+ * 忽略[ar:]等元数据和非LRC格式的行；译文按时间戳合并到对应的原文行
+ */
+public final class LyricParser {
+    private static final int INDEX_BITS = 20;                       // 排序键低位存行号
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final long TRANSLATION_TOLERANCE = 100;         // 译文与原文时间戳允许的误差（毫秒）
+
+    private LyricParser() {
+    }
+
+    /**
+     * 编译歌词
+     *
+     * @param lyric  原文LRC
+     * @param tlyric 译文LRC，可为空
+     * @return 编译结果，没有有效歌词时返回{@link Lyrics#EMPTY}
+     */
+    public static Lyrics compile(String lyric, String tlyric) {
+        ParsedLines original = parse(lyric);
+        if (original.count == 0) {
+            return Lyrics.EMPTY;
+        }
+        long[] times = new long[original.count];
+        String[] lines = new String[original.count];
+        original.sortInto(times, lines);
+
+        String[] translations = new String[times.length];
+        ParsedLines translated = parse(tlyric);
+        if (translated.count > 0) {
+            long[] translatedTimes = new long[translated.count];
+            String[] translatedLines = new String[translated.count];
+            translated.sortInto(translatedTimes, translatedLines);
+            for (int i = 0; i < translatedTimes.length; i++) {
+                if (translatedLines[i].isEmpty()) {
+                    continue;
+                }
+                int index = nearest(times, translatedTimes[i]);
+                if (Math.abs(times[index] - translatedTimes[i]) <= TRANSLATION_TOLERANCE
+                        && translations[index] == null && !lines[index].isEmpty()) {
+                    translations[index] = translatedLines[i];
+                }
+            }
+        }
+        // 译文按未偏移的时间戳合并，合并后再应用原文的偏移；正偏移表示歌词提前显示
+        if (original.offset != 0) {
+            for (int i = 0; i < times.length; i++) {
+                times[i] = Math.max(0, times[i] - original.offset);
+            }
+        }
+        return new Lyrics(times, lines, translations);
+    }
+
+    private static ParsedLines parse(String text) {
+        ParsedLines parsed = new ParsedLines();
+        if (text == null || text.isEmpty()) {
+            return parsed;
+        }
+        List<Long> lineTimes = new ArrayList<>();
+        for (String rawLine : text.split("\r\n|\r|\n")) {
+            String line = rawLine.trim();
+            lineTimes.clear();
+            int position = 0;
+            boolean metadata = false;
+            while (position < line.length() && line.charAt(position) == '[') {
+                int end = line.indexOf(']', position);
+                if (end < 0) {
+                    break;
+                }
+                String tag = line.substring(position + 1, end);
+                long time = parseTimestamp(tag);
+                if (time >= 0) {
+                    lineTimes.add(time);
+                } else if (lineTimes.isEmpty()) {
+                    if (tag.regionMatches(true, 0, "offset:", 0, 7)) {
+                        parsed.offset = parseOffset(tag.substring(7));
+                    }
+                    metadata = true;
+                    break;
+                } else {
+                    // 时间标签之后的方括号属于歌词正文
+                    break;
+                }
+                position = end + 1;
+            }
+            if (metadata || lineTimes.isEmpty()) {
+                continue;
+            }
+            String content = line.substring(position).trim();
+            for (long time : lineTimes) {
+                parsed.add(time, content);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * 解析mm:ss、mm:ss.xx、mm:ss.xxx、mm:ss:xx格式的时间标签
+     *
+     * @return 毫秒，不是时间标签时返回-1
+     */
+    static long parseTimestamp(String tag) {
+        int length = tag.length();
+        int i = 0;
+        long minutes = 0;
+        int digits = 0;
+        while (i < length && Character.isDigit(tag.charAt(i))) {
+            minutes = minutes * 10 + (tag.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > 4 || i >= length || tag.charAt(i) != ':') {
+            return -1;
+        }
+        i++;
+        long seconds = 0;
+        digits = 0;
+        while (i < length && Character.isDigit(tag.charAt(i))) {
+            seconds = seconds * 10 + (tag.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > 2 || seconds >= 60) {
+            return -1;
+        }
+        long millis = 0;
+        if (i < length) {
+            char separator = tag.charAt(i++);
+            if (separator != '.' && separator != ':') {
+                return -1;
+            }
+            int scale = 100;
+            digits = 0;
+            while (i < length && Character.isDigit(tag.charAt(i))) {
+                if (digits < 3) {
+                    millis += (tag.charAt(i) - '0') * scale;
+                    scale /= 10;
+                }
+                i++;
+                digits++;
+            }
+            if (digits == 0 || i < length) {
+                return -1;
+            }
+        }
+        return (minutes * 60 + seconds) * 1000 + millis;
+    }
+
+    private static long parseOffset(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 与目标时间最接近的下标，数组不能为空
+     */
+    private static int nearest(long[] times, long target) {
+        int index = Arrays.binarySearch(times, target);
+        if (index >= 0) {
+            return index;
+        }
+        int insertion = -index - 1;
+        if (insertion == 0) {
+            return 0;
+        }
+        if (insertion == times.length) {
+            return times.length - 1;
+        }
+        return target - times[insertion - 1] <= times[insertion] - target ? insertion - 1 : insertion;
+    }
+
+    /**
+     * 解析中间结果：时间戳与行号打包为long排序，同一时间的行保持原有顺序
+     */
+    private static class ParsedLines {
+        long[] keys = new long[64];
+        final List<String> texts = new ArrayList<>();
+        int count = 0;
+        long offset = 0; // [offset:]标签的值（毫秒）
+
+        void add(long time, String text) {
+            if (texts.size() > INDEX_MASK) {
+                return;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+            }
+            keys[count++] = (time << INDEX_BITS) | texts.size();
+            texts.add(text);
+        }
+
+        void sortInto(long[] times, String[] lines) {
+            long[] sorted = Arrays.copyOf(keys, count);
+            Arrays.sort(sorted);
+            for (int i = 0; i < count; i++) {
+                times[i] = sorted[i] >>> INDEX_BITS;
+                lines[i] = texts.get((int) (sorted[i] & INDEX_MASK));
+            }
+        }
+    }
+}
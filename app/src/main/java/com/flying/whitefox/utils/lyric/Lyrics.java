@@ -0,0 +1,75 @@
+package com.flying.whitefox.utils.lyric;
+
+/**
+ * 编译后的歌词
+ * 时间戳按升序保存在long数组中，第i个时间戳对应第i行原文和译文，按播放位置查找当前行为二分查找，不分配内存
+ */
+public final class Lyrics {
+    public static final Lyrics EMPTY = new Lyrics(new long[0], new String[0], new String[0]);
+
+    private final long[] times;          // 毫秒，升序
+    private final String[] lines;
+    private final String[] translations; // 没有译文的行为null
+    private final boolean hasTranslation;
+
+    Lyrics(long[] times, String[] lines, String[] translations) {
+        this.times = times;
+        this.lines = lines;
+        this.translations = translations;
+        boolean translated = false;
+        for (String translation : translations) {
+            if (translation != null) {
+                translated = true;
+                break;
+            }
+        }
+        this.hasTranslation = translated;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    public boolean hasTranslation() {
+        return hasTranslation;
+    }
+
+    /**
+     * 播放位置对应的歌词行：时间戳不大于该位置的最后一行
+     *
+     * @param positionMs 播放位置（毫秒）
+     * @return 行下标，位置在第一行之前或没有歌词时返回-1
+     */
+    public int indexAt(long positionMs) {
+        int low = 0;
+        int high = times.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= positionMs) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public String getLine(int index) {
+        return lines[index];
+    }
+
+    /**
+     * @return 该行的译文，没有时返回null
+     */
+    public String getTranslation(int index) {
+        return translations[index];
+    }
+}
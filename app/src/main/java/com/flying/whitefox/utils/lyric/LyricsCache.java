@@ -0,0 +1,72 @@
+package com.flying.whitefox.utils.lyric;
+
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.SongData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按歌曲ID缓存编译后的歌词，重复播放或切回上一首时无需重新解析
+ */
+public class LyricsCache {
+    private static final String TAG = "LyricsCache";
+    private static final int MAX_ENTRIES = 32;
+
+    private static LyricsCache instance;
+
+    private final LinkedHashMap<String, Lyrics> cache = new LinkedHashMap<String, Lyrics>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Lyrics> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private LyricsCache() {
+    }
+
+    public static synchronized LyricsCache getInstance() {
+        if (instance == null) {
+            instance = new LyricsCache();
+        }
+        return instance;
+    }
+
+    /**
+     * 获取歌曲的歌词，未缓存时从歌曲信息编译并缓存
+     * 本地缓存播放的歌曲信息不含歌词，此时只返回已缓存的结果，不缓存空歌词
+     *
+     * @param songId   歌曲ID
+     * @param songData 解析得到的歌曲信息
+     * @return 编译后的歌词，没有歌词时返回{@link Lyrics#EMPTY}
+     */
+    public Lyrics get(String songId, SongData songData) {
+        Lyrics cached = peek(songId);
+        if (cached != null) {
+            return cached;
+        }
+        if (songData == null || songData.lyric == null || songData.lyric.isEmpty()) {
+            return Lyrics.EMPTY;
+        }
+        Lyrics lyrics = LyricParser.compile(songData.lyric, songData.tlyric);
+        Log.d(TAG, "编译歌词: " + songId + ", " + lyrics.size() + " 行" + (lyrics.hasTranslation() ? "（含译文）" : ""));
+        if (songId != null) {
+            synchronized (this) {
+                cache.put(songId, lyrics);
+            }
+        }
+        return lyrics;
+    }
+
+    /**
+     * @return 已缓存的歌词，没有时返回null
+     */
+    public synchronized Lyrics peek(String songId) {
+        return songId != null ? cache.get(songId) : null;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+}
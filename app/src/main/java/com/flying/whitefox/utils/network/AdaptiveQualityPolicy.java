@@ -0,0 +1,167 @@
+package com.flying.whitefox.utils.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.QualityLevel;
+
+import java.util.Arrays;
+
+/**
+ * 自适应音质策略
+ * 根据ThroughputEstimator的吞吐量估计，在不超过上限的音质中选择链路能留有余量承载的最高一档；
+ * 播放准备或缓冲过慢时降一档，并在一段时间内不再回升
+ */
+public class AdaptiveQualityPolicy {
+    private static final String TAG = "AdaptiveQualityPolicy";
+
+    private static final double HEADROOM = 1.5;                  // 吞吐量需达到码率的1.5倍
+    private static final long PENALTY_DURATION = 3 * 60 * 1000;  // 降档后3分钟内不回升
+    // 按所需码率从低到高排列的音质；枚举顺序与码率不一致（如HIRES排在JYEFFECT之前但码率更高）
+    private static final QualityLevel[] LEVELS_BY_KBPS = sortByKbps();
+
+    private static AdaptiveQualityPolicy instance;
+
+    private final ThroughputEstimator estimator;
+    private QualityLevel maxLevel = QualityLevel.LOSSLESS;
+    private boolean adaptiveEnabled = true;
+    private QualityLevel penaltyCap;   // 降档后的临时上限
+    private long penaltyUntil = 0;
+
+    private AdaptiveQualityPolicy(ThroughputEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    public static synchronized AdaptiveQualityPolicy getInstance() {
+        if (instance == null) {
+            instance = new AdaptiveQualityPolicy(ThroughputEstimator.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * 各音质大致需要的码率
+     *
+     * @param level 音质级别
+     * @return 千比特每秒
+     */
+    public static int getRequiredKbps(QualityLevel level) {
+        switch (level) {
+            case EXHIGH:
+                return 320;
+            case LOSSLESS:
+                return 1000;
+            case JYEFFECT:
+                return 1500;
+            case HIRES:
+            case SKY:
+                return 2500;
+            case JYMASTER:
+                return 5000;
+            case STANDARD:
+            default:
+                return 128;
+        }
+    }
+
+    /**
+     * 低一档的音质：所需码率低于当前音质的最高一档，已是最低档时返回自身
+     */
+    public static QualityLevel lowerLevel(QualityLevel level) {
+        int kbps = getRequiredKbps(level);
+        for (int i = LEVELS_BY_KBPS.length - 1; i >= 0; i--) {
+            if (getRequiredKbps(LEVELS_BY_KBPS[i]) < kbps) {
+                return LEVELS_BY_KBPS[i];
+            }
+        }
+        return level;
+    }
+
+    /**
+     * 按所需码率升序排列的全部音质，码率相同时保持枚举顺序
+     *
+     * @return 新数组，可随意修改
+     */
+    public static QualityLevel[] getLevelsByKbps() {
+        return LEVELS_BY_KBPS.clone();
+    }
+
+    /**
+     * 音质是否不超过上限：码率低于上限，或就是上限本身
+     */
+    private static boolean isWithinCap(QualityLevel level, QualityLevel cap) {
+        return level == cap || getRequiredKbps(level) < getRequiredKbps(cap);
+    }
+
+    private static QualityLevel[] sortByKbps() {
+        QualityLevel[] levels = QualityLevel.values();
+        // 稳定排序，码率相同时保持枚举顺序
+        Arrays.sort(levels, (a, b) -> Integer.compare(getRequiredKbps(a), getRequiredKbps(b)));
+        return levels;
+    }
+
+    /**
+     * 选择当前网络下应使用的音质
+     *
+     * @return 音质级别
+     */
+    public synchronized QualityLevel selectLevel() {
+        QualityLevel cap = getEffectiveCap();
+        if (!adaptiveEnabled) {
+            return cap;
+        }
+        if (!estimator.hasEstimate()) {
+            // 还没有吞吐量数据时使用标准音质，保证尽快出声
+            return QualityLevel.STANDARD;
+        }
+        double estimateKbps = estimator.getEstimateKbps();
+        // 从码率最高的候选往下找，跳过超出上限的音质
+        for (int i = LEVELS_BY_KBPS.length - 1; i > 0; i--) {
+            QualityLevel level = LEVELS_BY_KBPS[i];
+            if (isWithinCap(level, cap) && getRequiredKbps(level) * HEADROOM <= estimateKbps) {
+                return level;
+            }
+        }
+        return LEVELS_BY_KBPS[0];
+    }
+
+    /**
+     * 播放准备或缓冲过慢，之后一段时间内上限降为比当前低一档
+     *
+     * @param current 出现卡顿时使用的音质
+     * @return 降档后的音质
+     */
+    public synchronized QualityLevel onSlowPlayback(QualityLevel current) {
+        QualityLevel lower = lowerLevel(current);
+        penaltyCap = lower;
+        penaltyUntil = SystemClock.elapsedRealtime() + PENALTY_DURATION;
+        Log.w(TAG, "播放过慢，音质从 " + current.getValue() + " 降为 " + lower.getValue());
+        return lower;
+    }
+
+    /**
+     * 设置用户允许的最高音质
+     */
+    public synchronized void setMaxLevel(QualityLevel level) {
+        maxLevel = level;
+    }
+
+    public synchronized QualityLevel getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * 关闭自适应后固定使用最高音质（仍受降档限制）
+     */
+    public synchronized void setAdaptiveEnabled(boolean enabled) {
+        adaptiveEnabled = enabled;
+    }
+
+    private QualityLevel getEffectiveCap() {
+        if (penaltyCap != null && SystemClock.elapsedRealtime() < penaltyUntil
+                && getRequiredKbps(penaltyCap) < getRequiredKbps(maxLevel)) {
+            return penaltyCap;
+        }
+        return maxLevel;
+    }
+}
@@ -0,0 +1,458 @@
+package com.flying.whitefox.utils.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.flying.whitefox.utils.cache.AudioDiskCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 本地音频缓存代理
+ * 在127.0.0.1上提供HTTP服务，MediaPlayer通过代理地址播放：已缓存的数据直接从磁盘返回（支持Range请求），
+ * 未缓存的部分从远程下载，边转发给播放器边写入磁盘缓存。重复播放无需网络，回退进度也不用重新缓冲
+ */
+public class AudioCacheProxy {
+    private static final String TAG = "AudioCacheProxy";
+    private static final String CACHE_DIR_NAME = "audio_cache";
+    private static final long MAX_CACHE_BYTES = 512L * 1024 * 1024; // 512MB
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SOCKET_TIMEOUT = 30 * 1000; // 毫秒
+    private static final String DEFAULT_CONTENT_TYPE = "audio/mpeg";
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern CONTENT_RANGE_TOTAL_PATTERN = Pattern.compile("/(\\d+)$");
+
+    private static AudioCacheProxy instance;
+
+    private AudioDiskCache diskCache;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private volatile boolean running = false;
+    private String baseUrl;
+
+    // 缓存键对应的远程地址和内容类型
+    private final Map<String, String> remoteUrls = new ConcurrentHashMap<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    private AudioCacheProxy() {
+    }
+
+    public static synchronized AudioCacheProxy getInstance() {
+        if (instance == null) {
+            instance = new AudioCacheProxy();
+        }
+        return instance;
+    }
+
+    /**
+     * 启动代理，重复调用只生效一次
+     */
+    public synchronized void start(Context context) {
+        if (running) {
+            return;
+        }
+        if (diskCache == null) {
+            diskCache = new AudioDiskCache(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME),
+                    MAX_CACHE_BYTES);
+        }
+        try {
+            serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        } catch (IOException e) {
+            Log.e(TAG, "启动音频缓存代理失败，直接播放远程地址", e);
+            return;
+        }
+        baseUrl = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "AudioCacheProxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        ServerSocket socket = serverSocket;
+        executor.execute(() -> acceptLoop(socket));
+        Log.d(TAG, "音频缓存代理已启动: " + baseUrl);
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭代理端口失败", e);
+        }
+        executor.shutdownNow();
+        Log.d(TAG, "音频缓存代理已停止");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 获取播放地址：代理可用时返回本地代理地址，否则返回原地址
+     *
+     * @param songId    歌曲ID
+     * @param quality   音质
+     * @param remoteUrl 远程播放地址
+     */
+    public String getProxyUrl(String songId, String quality, String remoteUrl) {
+        if (!running || songId == null || isProxyUrl(remoteUrl)) {
+            return remoteUrl;
+        }
+        String key = AudioDiskCache.buildKey(songId, quality);
+        remoteUrls.put(key, remoteUrl);
+        return baseUrl + key;
+    }
+
+    /**
+     * 已完整缓存时返回本地播放地址，无需解析远程链接
+     *
+     * @param songId  歌曲ID
+     * @param quality 音质
+     * @return 本地代理地址，未缓存返回null
+     */
+    public String getCachedPlaybackUrl(String songId, String quality) {
+        if (!running || songId == null) {
+            return null;
+        }
+        String key = AudioDiskCache.buildKey(songId, quality);
+        return diskCache.isComplete(key) ? baseUrl + key : null;
+    }
+
+    /**
+     * 代理地址对应的远程地址（播放出错时用于使链接缓存失效）
+     *
+     * @param url 播放地址
+     * @return 远程地址，不是代理地址时原样返回
+     */
+    public String getRemoteUrl(String url) {
+        if (!isProxyUrl(url)) {
+            return url;
+        }
+        String remoteUrl = remoteUrls.get(url.substring(baseUrl.length()));
+        return remoteUrl != null ? remoteUrl : url;
+    }
+
+    public boolean isProxyUrl(String url) {
+        return url != null && baseUrl != null && url.startsWith(baseUrl);
+    }
+
+    public long getCacheSize() {
+        return diskCache != null ? diskCache.getTotalBytes() : 0;
+    }
+
+    public void clearCache() {
+        if (diskCache != null) {
+            diskCache.clear();
+        }
+    }
+
+    private void acceptLoop(ServerSocket socket) {
+        while (running) {
+            try {
+                Socket client = socket.accept();
+                executor.execute(() -> handleClient(client));
+            } catch (IOException e) {
+                if (running) {
+                    Log.w(TAG, "接受连接失败", e);
+                }
+            } catch (RuntimeException e) {
+                // 线程池已关闭
+                Log.w(TAG, "处理连接失败", e);
+            }
+        }
+    }
+
+    private void handleClient(Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(SOCKET_TIMEOUT);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            String requestLine = readLine(in);
+            if (requestLine == null || requestLine.isEmpty()) {
+                return;
+            }
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 2) {
+                return;
+            }
+            boolean headOnly = "HEAD".equals(parts[0]);
+            String key = parts[1].substring(1);
+            int queryIndex = key.indexOf('?');
+            if (queryIndex >= 0) {
+                key = key.substring(0, queryIndex);
+            }
+
+            long rangeStart = -1;
+            long rangeEnd = -1;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    Matcher matcher = RANGE_PATTERN.matcher(line.substring(colon + 1).trim());
+                    if (matcher.matches() && !matcher.group(1).isEmpty()) {
+                        rangeStart = Long.parseLong(matcher.group(1));
+                        rangeEnd = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+                    }
+                }
+            }
+
+            OutputStream out = new BufferedOutputStream(client.getOutputStream(), BUFFER_SIZE);
+            File complete = diskCache.getCompleteFile(key);
+            if (complete != null) {
+                long served = serveFromFile(complete, complete.length(), key, rangeStart, rangeEnd, headOnly, out);
+                DataSaverManager.getInstance().recordCacheHit(served);
+            } else {
+                serveWithRemote(key, rangeStart, rangeEnd, headOnly, out);
+            }
+            out.flush();
+        } catch (SocketException e) {
+            // 播放器主动断开（切歌、拖动进度）属于正常情况
+            Log.d(TAG, "播放器断开连接: " + e.getMessage());
+        } catch (IOException e) {
+            Log.w(TAG, "代理请求处理失败", e);
+        }
+    }
+
+    /**
+     * 从磁盘文件返回请求的区间
+     *
+     * @return 返回给播放器的字节数
+     */
+    private long serveFromFile(File file, long total, String key, long rangeStart, long rangeEnd,
+                               boolean headOnly, OutputStream out) throws IOException {
+        long start = Math.max(rangeStart, 0);
+        long end = rangeEnd >= 0 ? Math.min(rangeEnd, total - 1) : total - 1;
+        if (start >= total) {
+            writeStatus(out, "416 Range Not Satisfiable", "bytes */" + total);
+            return 0;
+        }
+        writeHeaders(out, rangeStart >= 0, start, end, total, contentTypes.getOrDefault(key, DEFAULT_CONTENT_TYPE));
+        if (headOnly) {
+            return 0;
+        }
+        copyFileRange(file, start, end - start + 1, out);
+        return end - start + 1;
+    }
+
+    /**
+     * 缓存不完整时：已缓存的前缀从磁盘返回，其余部分请求远程并写入缓存
+     */
+    private void serveWithRemote(String key, long rangeStart, long rangeEnd, boolean headOnly,
+                                 OutputStream out) throws IOException {
+        String remoteUrl = remoteUrls.get(key);
+        if (remoteUrl == null) {
+            writeStatus(out, "404 Not Found", null);
+            return;
+        }
+        long start = Math.max(rangeStart, 0);
+        long cached = diskCache.getPartialLength(key);
+        long knownTotal = diskCache.getKnownLength(key);
+
+        // 请求的区间已全部在部分缓存中
+        if (knownTotal > 0 && cached > start) {
+            long end = rangeEnd >= 0 ? Math.min(rangeEnd, knownTotal - 1) : knownTotal - 1;
+            if (end < cached) {
+                serveFromFile(diskCache.getPartialFile(key), knownTotal, key, rangeStart, rangeEnd, headOnly, out);
+                return;
+            }
+        }
+
+        // 从已缓存数据的末尾开始向远程请求，保证缓存文件连续
+        long remoteStart = start <= cached && (rangeEnd < 0 || rangeEnd >= cached) ? cached : start;
+        // 边播边取的速度受播放器读取限制，不作为吞吐量样本，音频吞吐量由播放器缓冲进度估算
+        Request.Builder builder = new Request.Builder()
+                .url(remoteUrl)
+                .tag(ThroughputInterceptor.PacedStream.class, ThroughputInterceptor.PacedStream.INSTANCE);
+        if (remoteStart > 0 || rangeEnd >= 0) {
+            builder.addHeader("Range", "bytes=" + remoteStart + "-" + (rangeEnd >= 0 ? rangeEnd : ""));
+        }
+
+        try (Response response = HttpClientManager.getInstance().getClient().newCall(builder.build()).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                Log.w(TAG, "远程音频请求失败: " + response.code());
+                writeStatus(out, "502 Bad Gateway", null);
+                return;
+            }
+
+            long total = -1;
+            long skip = 0;
+            if (response.code() == 206) {
+                String contentRange = response.header("Content-Range");
+                Matcher matcher = contentRange != null ? CONTENT_RANGE_TOTAL_PATTERN.matcher(contentRange) : null;
+                if (matcher != null && matcher.find()) {
+                    total = Long.parseLong(matcher.group(1));
+                }
+            } else {
+                // 服务器忽略了Range，从头返回了完整内容
+                total = body.contentLength();
+                skip = remoteStart;
+            }
+            diskCache.setKnownLength(key, total);
+            String contentType = response.header("Content-Type", DEFAULT_CONTENT_TYPE);
+            contentTypes.put(key, contentType);
+
+            if (total > 0 && start >= total) {
+                writeStatus(out, "416 Range Not Satisfiable", "bytes */" + total);
+                return;
+            }
+            long end = total > 0 ? (rangeEnd >= 0 ? Math.min(rangeEnd, total - 1) : total - 1) : -1;
+            writeHeaders(out, rangeStart >= 0, start, end, total, contentType);
+            if (headOnly) {
+                return;
+            }
+
+            if (start < remoteStart) {
+                copyFileRange(diskCache.getPartialFile(key), start, remoteStart - start, out);
+            }
+            streamRemote(key, body.byteStream(), skip, remoteStart, remoteStart == cached, end, total, out);
+        }
+    }
+
+    /**
+     * 转发远程数据；数据与缓存连续时同时追加到部分缓存，下载完整后提交
+     */
+    private void streamRemote(String key, InputStream remote, long skip, long position, boolean contiguous,
+                              long end, long total, OutputStream out) throws IOException {
+        boolean writer = contiguous && diskCache.tryAcquireWriter(key);
+        FileOutputStream cacheOut = null;
+        if (writer) {
+            try {
+                cacheOut = new FileOutputStream(diskCache.getPartialFile(key), true);
+            } catch (IOException e) {
+                Log.w(TAG, "打开缓存文件失败，仅转发", e);
+            }
+        }
+        boolean reachedEnd = false;
+        try {
+            if (skip > 0 && remote.skip(skip) < skip) {
+                return;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = remote.read(buffer)) != -1) {
+                if (cacheOut != null) {
+                    try {
+                        cacheOut.write(buffer, 0, read);
+                    } catch (IOException e) {
+                        // 写缓存失败不影响播放，丢弃这次缓存
+                        Log.w(TAG, "写入音频缓存失败", e);
+                        closeQuietly(cacheOut);
+                        cacheOut = null;
+                        diskCache.discardPartial(key);
+                    }
+                }
+                // 只把播放器请求范围内的数据发给播放器
+                long remaining = end >= 0 ? end - position + 1 : read;
+                if (remaining > 0) {
+                    out.write(buffer, 0, (int) Math.min(read, remaining));
+                }
+                position += read;
+                if (cacheOut == null && end >= 0 && position > end) {
+                    break;
+                }
+            }
+            reachedEnd = read == -1;
+        } finally {
+            if (cacheOut != null) {
+                closeQuietly(cacheOut);
+            }
+            if (writer) {
+                long cachedLength = diskCache.getPartialLength(key);
+                if (cacheOut != null && ((total > 0 && cachedLength == total) || (total <= 0 && reachedEnd))) {
+                    diskCache.commit(key);
+                }
+                diskCache.releaseWriter(key);
+            }
+        }
+    }
+
+    private static void copyFileRange(File file, long start, long length, OutputStream out) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(start);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = raf.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    private static void writeHeaders(OutputStream out, boolean partial, long start, long end, long total,
+                                     String contentType) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        headers.append(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        headers.append("Content-Type: ").append(contentType).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        if (total > 0) {
+            headers.append("Content-Length: ").append(end - start + 1).append("\r\n");
+            if (partial) {
+                headers.append("Content-Range: bytes ").append(start).append('-').append(end)
+                        .append('/').append(total).append("\r\n");
+            }
+        }
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeStatus(OutputStream out, String status, String contentRange) throws IOException {
+        StringBuilder headers = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        if (contentRange != null) {
+            headers.append("Content-Range: ").append(contentRange).append("\r\n");
+        }
+        headers.append("Content-Length: 0\r\nConnection: close\r\n\r\n");
+        out.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c == -1 && line.length() == 0 ? null : line.toString();
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭缓存文件失败", e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.flying.whitefox.utils.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.flying.whitefox.data.model.music.QualityLevel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 省流量模式
+ * 由系统的计费网络状态和用户设置共同决定是否开启；开启后限制音质、关闭预取、
+ * 封面改用小尺寸缩略图，后台刷新攒批后一起发出。同时统计本次会话的下载量和节省量
+ */
+public class DataSaverManager {
+    private static final String TAG = "DataSaverManager";
+    private static final String PREF_NAME = "data_saver";
+    private static final String KEY_MODE = "mode";
+
+    private static final QualityLevel SAVER_QUALITY_CAP = QualityLevel.STANDARD;
+    public static final int LIST_THUMBNAIL_SIZE = 100;   // 列表封面缩略图边长（像素）
+    public static final int COVER_THUMBNAIL_SIZE = 300;  // 播放页封面缩略图边长（像素）
+    private static final long REFRESH_BATCH_WINDOW = 5 * 60 * 1000; // 后台刷新最多攒5分钟
+    private static final int REFRESH_BATCH_SIZE = 5;                // 攒够5个立即发出
+
+    /**
+     * 用户设置
+     */
+    public enum Mode {
+        OFF,   // 始终关闭
+        AUTO,  // 计费网络（移动数据、热点）下自动开启
+        ON     // 始终开启
+    }
+
+    private static DataSaverManager instance;
+
+    private Mode mode = Mode.AUTO;
+    private volatile boolean metered = false;
+    private SharedPreferences sharedPreferences;
+    private boolean initialized = false;
+
+    // 攒批的后台刷新，以键去重
+    private final Map<String, Runnable> pendingRefreshes = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushTask;
+
+    // 本次会话统计
+    private final AtomicLong sessionBytesDownloaded = new AtomicLong(0);
+    private final AtomicLong sessionBytesSaved = new AtomicLong(0);
+    private final AtomicInteger skippedPrefetches = new AtomicInteger(0);
+
+    private DataSaverManager() {
+    }
+
+    public static synchronized DataSaverManager getInstance() {
+        if (instance == null) {
+            instance = new DataSaverManager();
+        }
+        return instance;
+    }
+
+    /**
+     * 读取用户设置并监听网络变化，重复调用只生效一次
+     */
+    public synchronized void init(Context context) {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        Context appContext = context.getApplicationContext();
+        sharedPreferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        try {
+            mode = Mode.valueOf(sharedPreferences.getString(KEY_MODE, Mode.AUTO.name()));
+        } catch (IllegalArgumentException e) {
+            mode = Mode.AUTO;
+        }
+
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        metered = connectivityManager.isActiveNetworkMetered();
+        try {
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onCapabilitiesChanged(@NonNull Network network,
+                                                  @NonNull NetworkCapabilities networkCapabilities) {
+                    setMetered(!networkCapabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+                }
+
+                @Override
+                public void onLost(@NonNull Network network) {
+                    setMetered(connectivityManager.isActiveNetworkMetered());
+                }
+            });
+        } catch (SecurityException e) {
+            Log.w(TAG, "无法监听网络变化", e);
+        }
+        Log.d(TAG, "省流量模式: " + mode + ", 计费网络: " + metered);
+    }
+
+    /**
+     * 当前是否处于省流量模式
+     */
+    public synchronized boolean isEnabled() {
+        return mode == Mode.ON || (mode == Mode.AUTO && metered);
+    }
+
+    public boolean isMetered() {
+        return metered;
+    }
+
+    public synchronized Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        SharedPreferences prefs;
+        synchronized (this) {
+            this.mode = mode;
+            prefs = sharedPreferences;
+        }
+        if (prefs != null) {
+            prefs.edit().putString(KEY_MODE, mode.name()).apply();
+        }
+        Log.d(TAG, "省流量模式设置为: " + mode);
+        if (!isEnabled()) {
+            flushRefreshes();
+        }
+    }
+
+    /**
+     * 省流量模式下把音质限制在上限以内
+     *
+     * @param level 期望的音质
+     * @return 实际使用的音质
+     */
+    public QualityLevel capQuality(QualityLevel level) {
+        // 按所需码率比较，音质枚举的声明顺序不代表码率高低
+        if (isEnabled() && AdaptiveQualityPolicy.getRequiredKbps(level)
+                > AdaptiveQualityPolicy.getRequiredKbps(SAVER_QUALITY_CAP)) {
+            return SAVER_QUALITY_CAP;
+        }
+        return level;
+    }
+
+    /**
+     * 是否允许预取等推测性请求
+     */
+    public boolean isPrefetchAllowed() {
+        return !isEnabled();
+    }
+
+    /**
+     * 封面图地址：省流量模式下对网易云图片请求指定尺寸的缩略图
+     *
+     * @param url      原图地址
+     * @param sizePx   缩略图边长（像素）
+     * @return 实际加载的地址
+     */
+    public String getCoverUrl(String url, int sizePx) {
+        if (url == null || url.isEmpty() || !isEnabled()) {
+            return url;
+        }
+        Uri uri = Uri.parse(url);
+        String host = uri.getHost();
+        if (host == null || !host.endsWith("music.126.net")) {
+            return url;
+        }
+        return uri.buildUpon()
+                .clearQuery()
+                .appendQueryParameter("param", sizePx + "y" + sizePx)
+                .build()
+                .toString();
+    }
+
+    /**
+     * 提交后台刷新任务：省流量模式下攒批，达到数量或时间窗口后一起发出，避免频繁唤醒网络；
+     * 未开启时立即执行
+     *
+     * @param key  去重键，同一键只保留最后一次提交
+     * @param task 刷新任务
+     */
+    public void enqueueRefresh(String key, Runnable task) {
+        if (!isEnabled()) {
+            task.run();
+            return;
+        }
+        boolean flushNow;
+        synchronized (pendingRefreshes) {
+            pendingRefreshes.put(key, task);
+            flushNow = pendingRefreshes.size() >= REFRESH_BATCH_SIZE;
+            if (!flushNow && flushTask == null) {
+                flushTask = RetryScheduler.getInstance().schedule(this::flushRefreshes, REFRESH_BATCH_WINDOW);
+            }
+        }
+        Log.d(TAG, "后台刷新已加入批次: " + key);
+        if (flushNow) {
+            flushRefreshes();
+        }
+    }
+
+    /**
+     * 立即发出所有攒批的后台刷新
+     */
+    public void flushRefreshes() {
+        List<Runnable> tasks;
+        synchronized (pendingRefreshes) {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            if (pendingRefreshes.isEmpty()) {
+                return;
+            }
+            tasks = new ArrayList<>(pendingRefreshes.values());
+            pendingRefreshes.clear();
+        }
+        Log.d(TAG, "发出攒批的后台刷新: " + tasks.size() + " 个");
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "后台刷新失败", e);
+            }
+        }
+    }
+
+    /**
+     * 记录实际下载的字节数
+     */
+    public void recordDownloaded(long bytes) {
+        if (bytes > 0) {
+            sessionBytesDownloaded.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * 记录因限制音质节省的字节数：按码率比例估算原音质的大小
+     *
+     * @param actualBytes 实际音质的文件大小
+     * @param requested   原本会使用的音质
+     * @param actual      实际使用的音质
+     */
+    public void recordQualitySaving(long actualBytes, QualityLevel requested, QualityLevel actual) {
+        int requestedKbps = AdaptiveQualityPolicy.getRequiredKbps(requested);
+        int actualKbps = AdaptiveQualityPolicy.getRequiredKbps(actual);
+        if (actualBytes <= 0 || requestedKbps <= actualKbps) {
+            return;
+        }
+        sessionBytesSaved.addAndGet(actualBytes * (requestedKbps - actualKbps) / actualKbps);
+    }
+
+    /**
+     * 记录从本地音频缓存播放而省下的字节数
+     */
+    public void recordCacheHit(long bytes) {
+        if (bytes > 0) {
+            sessionBytesSaved.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * 记录被跳过的预取
+     *
+     * @param count 跳过的歌曲数
+     */
+    public void recordSkippedPrefetch(int count) {
+        skippedPrefetches.addAndGet(count);
+    }
+
+    public long getSessionBytesDownloaded() {
+        return sessionBytesDownloaded.get();
+    }
+
+    public long getSessionBytesSaved() {
+        return sessionBytesSaved.get();
+    }
+
+    public int getSkippedPrefetchCount() {
+        return skippedPrefetches.get();
+    }
+
+    /**
+     * 本次会话流量统计，用于展示
+     */
+    public String getSessionSummary() {
+        return String.format(Locale.getDefault(), "省流量模式: %s\n本次已下载: %s\n估计已节省: %s（跳过预取 %d 首）",
+                isEnabled() ? "已开启" : "未开启",
+                formatBytes(getSessionBytesDownloaded()),
+                formatBytes(getSessionBytesSaved()),
+                getSkippedPrefetchCount());
+    }
+
+    private void setMetered(boolean newMetered) {
+        if (metered == newMetered) {
+            return;
+        }
+        metered = newMetered;
+        Log.d(TAG, "网络计费状态变化: " + (newMetered ? "计费网络" : "非计费网络"));
+        if (!isEnabled()) {
+            // 切换到不计费网络，攒下的刷新可以直接发出
+            flushRefreshes();
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.getDefault(), "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.getDefault(), "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
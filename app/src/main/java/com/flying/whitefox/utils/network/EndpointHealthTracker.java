@@ -0,0 +1,286 @@
+package com.flying.whitefox.utils.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.HttpUrl;
+
+/**
+ * 解析接口健康度跟踪
+ * 为每个接口记录延迟的指数加权平均、成功率和最近失败时间，据此动态排序候选接口；
+ * 连续失败后打开熔断器，冷却结束后放行一次探测请求（半开），探测成功才恢复。
+ * 状态持久化到SharedPreferences，冷启动时无需重新发现接口故障
+ */
+public class EndpointHealthTracker {
+    private static final String TAG = "EndpointHealthTracker";
+    private static final String PREF_NAME = "endpoint_health";
+    private static final String KEY_STATS = "stats";
+
+    private static final double LATENCY_ALPHA = 0.3;      // 延迟EWMA的平滑系数
+    private static final double SUCCESS_ALPHA = 0.2;      // 成功率EWMA的平滑系数
+    private static final int FAILURE_THRESHOLD = 3;       // 连续失败多少次打开熔断器
+    private static final long BASE_OPEN_DURATION = 30 * 1000;      // 首次熔断30秒
+    private static final long MAX_OPEN_DURATION = 5 * 60 * 1000;   // 熔断最长5分钟
+    private static final long PROBE_TIMEOUT = 30 * 1000;  // 探测请求超过该时间没有结果则允许再次探测
+    private static final long SAVE_INTERVAL = 10 * 1000;  // 非状态变化时最多每10秒保存一次
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED,    // 正常
+        OPEN,      // 熔断中，不参与请求
+        HALF_OPEN  // 冷却结束，等待探测结果
+    }
+
+    /**
+     * 单个接口的统计信息
+     */
+    private static class EndpointStats {
+        double latencyEwma = 0;   // 毫秒，0表示尚无数据
+        double successRate = 1.0;
+        long lastFailureTime = 0;
+        int consecutiveFailures = 0;
+        int openCount = 0;        // 连续熔断次数，用于延长熔断时间
+        State state = State.CLOSED;
+        long openUntil = 0;
+        transient long probeStartedAt = 0;
+    }
+
+    private static EndpointHealthTracker instance;
+
+    private final Map<String, EndpointStats> statsMap = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+    private SharedPreferences sharedPreferences;
+    private long lastSaveTime = 0;
+
+    private EndpointHealthTracker() {
+    }
+
+    public static synchronized EndpointHealthTracker getInstance() {
+        if (instance == null) {
+            instance = new EndpointHealthTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * 绑定存储并恢复上次的健康状态，重复调用只生效一次
+     */
+    public synchronized void init(Context context) {
+        if (sharedPreferences != null || context == null) {
+            return;
+        }
+        sharedPreferences = context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        String json = sharedPreferences.getString(KEY_STATS, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            Type type = new TypeToken<Map<String, EndpointStats>>() {}.getType();
+            Map<String, EndpointStats> saved = gson.fromJson(json, type);
+            if (saved != null) {
+                for (Map.Entry<String, EndpointStats> entry : saved.entrySet()) {
+                    statsMap.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+                Log.d(TAG, "恢复接口健康状态: " + saved.size() + " 个接口");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "解析接口健康状态失败", e);
+        }
+    }
+
+    /**
+     * 选出本次可以请求的候选URL：熔断中的接口不参与，其余按期望耗时（延迟/成功率）升序，
+     * 没有数据的接口保持原有顺序。所有接口都在熔断时才退而使用它们，按恢复时间先后排列
+     *
+     * @param urls 候选URL
+     * @return 排序后的新列表，urls非空时不为空
+     */
+    public List<String> selectCandidates(List<String> urls) {
+        long now = System.currentTimeMillis();
+        List<String> available = new ArrayList<>();
+        List<String> open = new ArrayList<>();
+        for (String url : urls) {
+            if (isAvailable(url, now)) {
+                available.add(url);
+            } else {
+                open.add(url);
+            }
+        }
+        if (available.isEmpty()) {
+            Log.w(TAG, "所有接口都在熔断中，仍尝试请求");
+            Collections.sort(open, (a, b) -> Long.compare(openUntil(a), openUntil(b)));
+            return open;
+        }
+        // 稳定排序，得分相同时保持原有顺序
+        Collections.sort(available, (a, b) -> Double.compare(score(a), score(b)));
+        return available;
+    }
+
+    /**
+     * 记录一次成功请求
+     *
+     * @param url       请求URL
+     * @param latencyMs 耗时（毫秒）
+     */
+    public void recordSuccess(String url, long latencyMs) {
+        EndpointStats stats = getStats(url);
+        boolean stateChanged;
+        synchronized (stats) {
+            stats.latencyEwma = stats.latencyEwma <= 0
+                    ? latencyMs
+                    : LATENCY_ALPHA * latencyMs + (1 - LATENCY_ALPHA) * stats.latencyEwma;
+            stats.successRate = SUCCESS_ALPHA + (1 - SUCCESS_ALPHA) * stats.successRate;
+            stats.consecutiveFailures = 0;
+            stateChanged = stats.state != State.CLOSED;
+            if (stateChanged) {
+                Log.i(TAG, "接口恢复正常，关闭熔断器: " + endpointKey(url));
+            }
+            stats.state = State.CLOSED;
+            stats.openCount = 0;
+            stats.probeStartedAt = 0;
+        }
+        save(stateChanged);
+    }
+
+    /**
+     * 记录一次失败请求
+     *
+     * @param url 请求URL
+     */
+    public void recordFailure(String url) {
+        EndpointStats stats = getStats(url);
+        boolean stateChanged = false;
+        synchronized (stats) {
+            long now = System.currentTimeMillis();
+            stats.successRate = (1 - SUCCESS_ALPHA) * stats.successRate;
+            stats.lastFailureTime = now;
+            stats.consecutiveFailures++;
+            stats.probeStartedAt = 0;
+            // 熔断期间的兜底请求失败不再延长熔断时间
+            if (stats.state != State.OPEN
+                    && (stats.state == State.HALF_OPEN || stats.consecutiveFailures >= FAILURE_THRESHOLD)) {
+                // 探测失败或连续失败，打开熔断器，每次重新熔断时间加倍
+                long duration = Math.min(MAX_OPEN_DURATION, BASE_OPEN_DURATION << Math.min(stats.openCount, 10));
+                stateChanged = true;
+                stats.state = State.OPEN;
+                stats.openUntil = now + duration;
+                stats.openCount++;
+                Log.w(TAG, "接口连续失败，熔断 " + duration / 1000 + " 秒: " + endpointKey(url));
+            }
+        }
+        save(stateChanged);
+    }
+
+    /**
+     * 请求被取消（例如对冲请求中其他接口已胜出），不计入成功或失败，只释放探测名额
+     *
+     * @param url 请求URL
+     */
+    public void recordCancelled(String url) {
+        EndpointStats stats = statsMap.get(endpointKey(url));
+        if (stats != null) {
+            synchronized (stats) {
+                stats.probeStartedAt = 0;
+            }
+        }
+    }
+
+    public State getState(String url) {
+        EndpointStats stats = statsMap.get(endpointKey(url));
+        return stats != null ? stats.state : State.CLOSED;
+    }
+
+    public void reset() {
+        statsMap.clear();
+        save(true);
+    }
+
+    // 熔断中的接口不可用；冷却结束后放行一个探测请求
+    private boolean isAvailable(String url, long now) {
+        EndpointStats stats = statsMap.get(endpointKey(url));
+        if (stats == null) {
+            return true;
+        }
+        synchronized (stats) {
+            switch (stats.state) {
+                case OPEN:
+                    if (now < stats.openUntil) {
+                        return false;
+                    }
+                    stats.state = State.HALF_OPEN;
+                    stats.probeStartedAt = now;
+                    Log.d(TAG, "熔断冷却结束，发送探测请求: " + endpointKey(url));
+                    return true;
+                case HALF_OPEN:
+                    if (stats.probeStartedAt > 0 && now - stats.probeStartedAt < PROBE_TIMEOUT) {
+                        return false;
+                    }
+                    stats.probeStartedAt = now;
+                    return true;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private long openUntil(String url) {
+        EndpointStats stats = statsMap.get(endpointKey(url));
+        if (stats == null) {
+            return 0;
+        }
+        synchronized (stats) {
+            return stats.openUntil;
+        }
+    }
+
+    // 期望耗时，越小越好
+    private double score(String url) {
+        EndpointStats stats = statsMap.get(endpointKey(url));
+        if (stats == null || stats.latencyEwma <= 0) {
+            return 0;
+        }
+        return stats.latencyEwma / Math.max(stats.successRate, 0.05);
+    }
+
+    private EndpointStats getStats(String url) {
+        String key = endpointKey(url);
+        EndpointStats stats = statsMap.get(key);
+        if (stats == null) {
+            statsMap.putIfAbsent(key, new EndpointStats());
+            stats = statsMap.get(key);
+        }
+        return stats;
+    }
+
+    // 同一接口不同参数的请求共享统计
+    private static String endpointKey(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl != null ? httpUrl.host() + httpUrl.encodedPath() : url;
+    }
+
+    private void save(boolean force) {
+        SharedPreferences prefs;
+        synchronized (this) {
+            prefs = sharedPreferences;
+            long now = System.currentTimeMillis();
+            if (prefs == null || (!force && now - lastSaveTime < SAVE_INTERVAL)) {
+                return;
+            }
+            lastSaveTime = now;
+        }
+        prefs.edit().putString(KEY_STATS, gson.toJson(statsMap)).apply();
+    }
+}
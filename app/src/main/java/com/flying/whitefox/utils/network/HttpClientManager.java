@@ -0,0 +1,118 @@
+package com.flying.whitefox.utils.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * 全局共享的OkHttpClient
+ * MusicService、NetworkManager和图片加载共用同一个连接池、调度器和磁盘缓存，
+ * 避免每个调用方各自建立连接和TLS握手
+ */
+public class HttpClientManager {
+    private static final String TAG = "HttpClientManager";
+    private static final String CACHE_DIR_NAME = "http_cache";
+
+    // 默认配置
+    private static final long DISK_CACHE_SIZE = 50L * 1024 * 1024; // 50MB
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_DURATION = 5; // 分钟
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 8; // 封面图并发较多，放宽单主机限制
+    private static final long CONNECT_TIMEOUT = 10; // 秒
+    private static final long READ_TIMEOUT = 20; // 秒
+    private static final long WRITE_TIMEOUT = 20; // 秒
+
+    private static HttpClientManager instance;
+    private OkHttpClient client;
+    private boolean initialized = false;
+
+    private HttpClientManager() {
+        // 未初始化前先提供一个不带磁盘缓存的客户端
+        client = buildClient();
+    }
+
+    public static synchronized HttpClientManager getInstance() {
+        if (instance == null) {
+            instance = new HttpClientManager();
+        }
+        return instance;
+    }
+
+    /**
+     * 使用应用上下文初始化磁盘缓存和Picasso，可重复调用
+     *
+     * @param context 上下文
+     */
+    public synchronized void init(Context context) {
+        if (initialized) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        Cache cache = new Cache(new File(appContext.getCacheDir(), CACHE_DIR_NAME), DISK_CACHE_SIZE);
+        // 复用已有的连接池和调度器，只补充磁盘缓存
+        client = client.newBuilder()
+                .cache(cache)
+                .build();
+        initialized = true;
+        // 省流量模式需要监听网络计费状态
+        DataSaverManager.getInstance().init(appContext);
+
+        // 让Picasso也走共享的客户端
+        try {
+            Picasso picasso = new Picasso.Builder(appContext)
+                    .downloader(new OkHttp3Downloader(client))
+                    .build();
+            Picasso.setSingletonInstance(picasso);
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Picasso单例已存在，跳过设置", e);
+        }
+        Log.d(TAG, "HttpClientManager初始化完成");
+    }
+
+    public synchronized OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * 调整超时配置，新客户端仍共享连接池、调度器和缓存
+     *
+     * @param connectTimeout 连接超时（秒）
+     * @param readTimeout    读取超时（秒）
+     * @param writeTimeout   写入超时（秒）
+     */
+    public synchronized void setTimeouts(long connectTimeout, long readTimeout, long writeTimeout) {
+        client = client.newBuilder()
+                .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                .readTimeout(readTimeout, TimeUnit.SECONDS)
+                .writeTimeout(writeTimeout, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static OkHttpClient buildClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
+                .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                // 统计实际下载吞吐量，用于自适应音质
+                .addNetworkInterceptor(new ThroughputInterceptor())
+                .build();
+    }
+}
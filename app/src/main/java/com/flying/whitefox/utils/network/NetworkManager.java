@@ -21,7 +21,8 @@ public class NetworkManager {
         loggingInterceptor.setLevel(BuildConfig.DEBUG ?
             HttpLoggingInterceptor.Level.BODY : HttpLoggingInterceptor.Level.NONE);
 
-        OkHttpClient client = new OkHttpClient.Builder()
+        // 基于共享客户端派生，复用连接池和磁盘缓存
+        OkHttpClient client = HttpClientManager.getInstance().getClient().newBuilder()
                 .addInterceptor(loggingInterceptor)
                 .build();
 
@@ -0,0 +1,175 @@
+package com.flying.whitefox.utils.network;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+
+/**
+ * 请求登记表
+ * 每个请求持有自己的取消令牌，并按用途分组，调用方只取消自己的请求或某一组请求，
+ * 不同歌单、导入流程和播放页之间互不干扰
+ */
+public class RequestRegistry {
+    private static final String TAG = "RequestRegistry";
+
+    /**
+     * 请求用途分组
+     */
+    public enum RequestGroup {
+        PLAYLIST,  // 歌单
+        SONG_URL,  // 歌曲链接（当前播放）
+        SEARCH,    // 搜索
+        PREFETCH,  // 预取
+        DOWNLOAD   // 离线下载
+    }
+
+    /**
+     * 取消令牌：记录该请求发起的所有Call，取消时一并取消
+     */
+    public static class CancellationToken {
+        private final RequestGroup group;
+        private final String tag;
+        private final List<Call> calls = new ArrayList<>();
+        private final List<Runnable> cancelListeners = new ArrayList<>();
+        private boolean cancelled = false;
+
+        CancellationToken(RequestGroup group, String tag) {
+            this.group = group;
+            this.tag = tag;
+        }
+
+        public RequestGroup getGroup() {
+            return group;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 登记该请求发起的Call，令牌已取消时立即取消该Call
+         *
+         * @param call 网络请求
+         * @return 令牌是否仍然有效
+         */
+        public boolean register(Call call) {
+            synchronized (this) {
+                if (!cancelled) {
+                    calls.add(call);
+                    return true;
+                }
+            }
+            call.cancel();
+            return false;
+        }
+
+        /**
+         * 取消时回调，令牌已取消时立即执行
+         */
+        public void onCancel(Runnable listener) {
+            synchronized (this) {
+                if (!cancelled) {
+                    cancelListeners.add(listener);
+                    return;
+                }
+            }
+            listener.run();
+        }
+
+        public void cancel() {
+            List<Call> callsToCancel;
+            List<Runnable> listeners;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                callsToCancel = new ArrayList<>(calls);
+                listeners = new ArrayList<>(cancelListeners);
+                calls.clear();
+                cancelListeners.clear();
+            }
+            for (Call call : callsToCancel) {
+                if (!call.isCanceled()) {
+                    call.cancel();
+                }
+            }
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+            Log.d(TAG, "已取消请求: " + group + " " + tag);
+        }
+    }
+
+    private final Set<CancellationToken> activeTokens = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 创建并登记新的取消令牌
+     *
+     * @param group 用途分组
+     * @param tag   便于日志定位的标识
+     */
+    public CancellationToken newToken(RequestGroup group, String tag) {
+        CancellationToken token = new CancellationToken(group, tag);
+        activeTokens.add(token);
+        return token;
+    }
+
+    /**
+     * 创建不登记到分组的令牌，供多个调用方合并的请求使用
+     * 各调用方用自己的令牌归入各自的分组，共享请求只在所有调用方退出后才取消，不受cancelGroup影响
+     *
+     * @param group 发起时的用途，仅用于日志
+     * @param tag   便于日志定位的标识
+     */
+    public CancellationToken newSharedToken(RequestGroup group, String tag) {
+        return new CancellationToken(group, tag);
+    }
+
+    /**
+     * 请求结束后移除令牌
+     */
+    public void release(CancellationToken token) {
+        activeTokens.remove(token);
+    }
+
+    /**
+     * 取消某一分组内的所有请求
+     *
+     * @param group 用途分组
+     */
+    public void cancelGroup(RequestGroup group) {
+        for (CancellationToken token : activeTokens) {
+            if (token.getGroup() == group) {
+                activeTokens.remove(token);
+                token.cancel();
+            }
+        }
+    }
+
+    public void cancelAll() {
+        for (CancellationToken token : activeTokens) {
+            activeTokens.remove(token);
+            token.cancel();
+        }
+    }
+
+    public int getActiveCount(RequestGroup group) {
+        int count = 0;
+        for (CancellationToken token : activeTokens) {
+            if (token.getGroup() == group) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
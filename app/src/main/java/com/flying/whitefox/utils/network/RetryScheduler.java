@@ -0,0 +1,160 @@
+package com.flying.whitefox.utils.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网络请求重试调度器
+ * 在后台调度线程上执行，不占用主线程；按错误类型使用不同的指数退避策略（带随机抖动），
+ * 并通过全局重试预算限制重试总量，避免服务端故障时重试风暴
+ */
+public class RetryScheduler {
+    private static final String TAG = "RetryScheduler";
+
+    // 重试预算：最多积攒的重试次数，以及每次重试额度的恢复间隔
+    private static final int MAX_RETRY_TOKENS = 10;
+    private static final long TOKEN_REFILL_INTERVAL = 6000; // 每6秒恢复一次重试额度
+
+    /**
+     * 错误类型
+     */
+    public enum ErrorType {
+        SERVER_BUSY,   // 服务器忙碌（-447、429等）
+        HTTP_5XX,      // 服务器错误
+        HTTP_4XX,      // 客户端错误，重试通常无意义
+        NETWORK,       // 网络连接失败、超时
+        PARSE,         // 响应解析失败或数据不完整
+        CANCELLED      // 请求已取消，不重试
+    }
+
+    /**
+     * 重试策略
+     */
+    public static class Policy {
+        public final int maxRetries;
+        public final long baseDelay; // 毫秒
+        public final long maxDelay;  // 毫秒
+
+        public Policy(int maxRetries, long baseDelay, long maxDelay) {
+            this.maxRetries = maxRetries;
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+        }
+    }
+
+    private static RetryScheduler instance;
+
+    private final ScheduledExecutorService executor;
+    private final Map<ErrorType, Policy> policies = new EnumMap<>(ErrorType.class);
+    private final Random random = new Random();
+    private int retryTokens = MAX_RETRY_TOKENS;
+    private long lastRefillTime = SystemClock.elapsedRealtime();
+
+    private RetryScheduler() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RetryScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 服务器忙碌时退避要更久
+        policies.put(ErrorType.SERVER_BUSY, new Policy(3, 2000, 16000));
+        policies.put(ErrorType.HTTP_5XX, new Policy(3, 1000, 8000));
+        policies.put(ErrorType.HTTP_4XX, new Policy(0, 0, 0));
+        policies.put(ErrorType.NETWORK, new Policy(3, 500, 4000));
+        policies.put(ErrorType.PARSE, new Policy(1, 1000, 1000));
+        policies.put(ErrorType.CANCELLED, new Policy(0, 0, 0));
+    }
+
+    public static synchronized RetryScheduler getInstance() {
+        if (instance == null) {
+            instance = new RetryScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * 根据HTTP状态码判断错误类型
+     *
+     * @param code HTTP状态码
+     * @return 错误类型
+     */
+    public static ErrorType classifyHttpCode(int code) {
+        if (code == 429 || code == 503) {
+            return ErrorType.SERVER_BUSY;
+        }
+        if (code >= 500) {
+            return ErrorType.HTTP_5XX;
+        }
+        return ErrorType.HTTP_4XX;
+    }
+
+    public synchronized void setPolicy(ErrorType type, Policy policy) {
+        policies.put(type, policy);
+    }
+
+    /**
+     * 在退避延迟后重试
+     *
+     * @param type     本次失败的错误类型
+     * @param attempt  已重试次数（首次失败为0）
+     * @param task     重试任务
+     * @return 是否已安排重试；返回false表示不应再重试
+     */
+    public boolean scheduleRetry(ErrorType type, int attempt, Runnable task) {
+        long delay;
+        synchronized (this) {
+            Policy policy = policies.get(type);
+            if (policy == null || attempt >= policy.maxRetries) {
+                Log.d(TAG, "不再重试: " + type + ", 已重试 " + attempt + " 次");
+                return false;
+            }
+            if (!tryAcquireToken()) {
+                Log.w(TAG, "重试预算已用完，放弃重试: " + type);
+                return false;
+            }
+            delay = computeDelay(policy, attempt);
+        }
+        Log.d(TAG, "将在 " + delay + "ms 后进行第 " + (attempt + 1) + " 次重试，错误类型: " + type);
+        executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * 在后台线程延迟执行任务
+     *
+     * @param task  任务
+     * @param delay 延迟（毫秒）
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // 指数退避，在上限的一半到上限之间随机抖动
+    private long computeDelay(Policy policy, int attempt) {
+        long exponential = policy.baseDelay << Math.min(attempt, 16);
+        long capped = Math.min(policy.maxDelay, exponential);
+        return capped / 2 + (long) (random.nextDouble() * (capped / 2.0));
+    }
+
+    private boolean tryAcquireToken() {
+        long now = SystemClock.elapsedRealtime();
+        int refill = (int) ((now - lastRefillTime) / TOKEN_REFILL_INTERVAL);
+        if (refill > 0) {
+            retryTokens = Math.min(MAX_RETRY_TOKENS, retryTokens + refill);
+            lastRefillTime += refill * TOKEN_REFILL_INTERVAL;
+        }
+        if (retryTokens <= 0) {
+            return false;
+        }
+        retryTokens--;
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.flying.whitefox.utils.network;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 同一个键同时只会有一个进行中的请求，并发调用方共享同一个结果。
+ * 每个调用方拿到的是独立的Future，取消自己的Future不会影响其他调用方，
+ * 只有所有调用方都取消后才会取消底层请求
+ *
+ * @param <K> 请求键
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K, V> {
+    private static final String TAG = "SingleFlight";
+
+    private final Map<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private static class Flight<V> {
+        final CompletableFuture<V> source = new CompletableFuture<>();
+        int subscribers = 0;
+        CompletableFuture<V> upstream;
+    }
+
+    /**
+     * 执行请求，已有相同键的请求进行中时直接共享其结果
+     *
+     * @param key    请求键
+     * @param loader 真正发起请求的方法
+     * @return 本调用方独立的结果Future
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        Flight<V> flight = new Flight<>();
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            CompletableFuture<V> joined = subscribe(existing);
+            if (joined != null) {
+                Log.d(TAG, "合并进行中的请求: " + key);
+                return joined;
+            }
+            // 已有请求刚好结束，重新发起
+            inFlight.remove(key, existing);
+            return execute(key, loader);
+        }
+
+        CompletableFuture<V> result = subscribe(flight);
+        CompletableFuture<V> upstream;
+        try {
+            upstream = loader.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.source.completeExceptionally(e);
+            return result;
+        }
+        synchronized (flight) {
+            flight.upstream = upstream;
+        }
+        upstream.whenComplete((value, throwable) -> {
+            inFlight.remove(key, flight);
+            if (throwable != null) {
+                flight.source.completeExceptionally(throwable);
+            } else {
+                flight.source.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 当前是否有该键的请求在进行
+     */
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    // 为调用方创建独立的Future，返回null表示该请求已结束无法加入
+    private CompletableFuture<V> subscribe(Flight<V> flight) {
+        synchronized (flight) {
+            if (flight.source.isDone()) {
+                return null;
+            }
+            flight.subscribers++;
+        }
+        CompletableFuture<V> child = new CompletableFuture<>();
+        flight.source.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                child.completeExceptionally(throwable);
+            } else {
+                child.complete(value);
+            }
+        });
+        child.whenComplete((value, throwable) -> {
+            if (child.isCancelled()) {
+                unsubscribe(flight);
+            }
+        });
+        return child;
+    }
+
+    private void unsubscribe(Flight<V> flight) {
+        CompletableFuture<V> upstream = null;
+        synchronized (flight) {
+            flight.subscribers--;
+            if (flight.subscribers <= 0 && !flight.source.isDone()) {
+                upstream = flight.upstream;
+            }
+        }
+        if (upstream != null) {
+            // 所有调用方都已取消，取消底层请求
+            upstream.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.flying.whitefox.utils.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 网络吞吐量估算
+ * 由接口响应下载和播放器音频缓冲两路实际下载数据喂入，按样本大小加权做指数平滑，
+ * 太小的样本主要反映延迟而不是带宽，直接忽略
+ */
+public class ThroughputEstimator {
+    private static final String TAG = "ThroughputEstimator";
+
+    private static final long MIN_SAMPLE_BYTES = 16 * 1024;   // 小于16KB的样本不计入
+    private static final long MIN_SAMPLE_DURATION = 20;      // 毫秒
+    private static final long REFERENCE_BYTES = 256 * 1024;  // 达到该大小的样本使用完整平滑系数
+    private static final double MAX_ALPHA = 0.3;
+    private static final long STALE_AFTER = 10 * 60 * 1000;  // 超过10分钟没有新样本则视为没有估计值
+
+    private static ThroughputEstimator instance;
+
+    private double estimateKbps = 0; // 0表示尚无估计值
+    private long lastSampleTime = 0;
+    private int sampleCount = 0;
+
+    private ThroughputEstimator() {
+    }
+
+    public static synchronized ThroughputEstimator getInstance() {
+        if (instance == null) {
+            instance = new ThroughputEstimator();
+        }
+        return instance;
+    }
+
+    /**
+     * 记录一次下载样本
+     *
+     * @param bytes      下载字节数
+     * @param durationMs 耗时（毫秒）
+     */
+    public synchronized void addSample(long bytes, long durationMs) {
+        if (bytes < MIN_SAMPLE_BYTES || durationMs < MIN_SAMPLE_DURATION) {
+            return;
+        }
+        double kbps = bytes * 8.0 / durationMs; // 比特/毫秒 即 千比特/秒
+        if (estimateKbps <= 0 || isStale()) {
+            estimateKbps = kbps;
+        } else {
+            // 大样本更能代表链路带宽，权重更高
+            double alpha = MAX_ALPHA * Math.min(1.0, (double) bytes / REFERENCE_BYTES);
+            estimateKbps = alpha * kbps + (1 - alpha) * estimateKbps;
+        }
+        lastSampleTime = SystemClock.elapsedRealtime();
+        sampleCount++;
+        Log.d(TAG, "吞吐量样本: " + (int) kbps + "kbps, 当前估计: " + (int) estimateKbps + "kbps");
+    }
+
+    /**
+     * 当前估计的吞吐量
+     *
+     * @return 千比特每秒，没有可用估计时返回0
+     */
+    public synchronized double getEstimateKbps() {
+        return isStale() ? 0 : estimateKbps;
+    }
+
+    public synchronized boolean hasEstimate() {
+        return estimateKbps > 0 && !isStale();
+    }
+
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized void reset() {
+        estimateKbps = 0;
+        lastSampleTime = 0;
+        sampleCount = 0;
+    }
+
+    private boolean isStale() {
+        return lastSampleTime == 0 || SystemClock.elapsedRealtime() - lastSampleTime > STALE_AFTER;
+    }
+}
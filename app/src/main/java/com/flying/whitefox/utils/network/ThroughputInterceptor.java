@@ -0,0 +1,107 @@
+package com.flying.whitefox.utils.network;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * 网络层拦截器：统计响应体的实际下载字节数和耗时，交给ThroughputEstimator和流量统计
+ * 只统计真正走网络的响应，磁盘缓存命中不会经过网络拦截器
+ */
+class ThroughputInterceptor implements Interceptor {
+
+    /**
+     * 请求标签：响应按播放器的读取速度消费（如音频代理），耗时反映播放进度而不是网络速度，
+     * 只计入流量统计，不作为吞吐量样本
+     */
+    static final class PacedStream {
+        static final PacedStream INSTANCE = new PacedStream();
+
+        private PacedStream() {
+        }
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        long startTime = SystemClock.elapsedRealtime();
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        boolean sampleThroughput = chain.request().tag(PacedStream.class) == null;
+        return response.newBuilder()
+                .body(new CountingResponseBody(body, startTime, sampleThroughput))
+                .build();
+    }
+
+    private static class CountingResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+        private final boolean sampleThroughput;
+        private long totalBytes = 0;
+        private boolean reported = false;
+
+        CountingResponseBody(ResponseBody delegate, long startTime, boolean sampleThroughput) {
+            this.delegate = delegate;
+            this.sampleThroughput = sampleThroughput;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        totalBytes += read;
+                    } else if (read == -1) {
+                        report(startTime);
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    report(startTime);
+                    super.close();
+                }
+            });
+        }
+
+        private void report(long startTime) {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            if (sampleThroughput) {
+                ThroughputEstimator.getInstance().addSample(totalBytes, SystemClock.elapsedRealtime() - startTime);
+            }
+            DataSaverManager.getInstance().recordDownloaded(totalBytes);
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NonNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.flying.whitefox.utils.search;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+import com.flying.whitefox.utils.cache.PlaylistCacheManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 拼音搜索索引
+ * 把歌名、歌手、专辑转写为拼音音节，支持全拼、首字母及两者混合输入（如“zjl”“zhoujl”“qingtian”），
+ * 精确匹配不到时按编辑距离容错。转写结果随歌单缓存保存，同一歌单只计算一次
+ */
+public class PinyinSearchIndex {
+    private static final String TAG = "PinyinSearchIndex";
+    private static final int FIELD_COUNT = 3;             // 歌名、歌手、专辑
+    private static final int FUZZY_THRESHOLD = 10;        // 精确结果少于该数量时才做容错匹配
+    private static final int MIN_FUZZY_QUERY_LENGTH = 4;  // 过短的输入不做容错，避免大量误匹配
+
+    private static final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PinyinSearchIndex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // [歌曲][字段] -> 音节，非汉字的字母数字按单词作为一个音节
+    private final String[][][] syllables;
+    private final String[][] fullPinyin;
+    private final String[][] initials;
+    // 全拼中出现过的字母数字位图，用于快速排除不可能匹配的歌曲
+    private final long[][] charMasks;
+
+    private PinyinSearchIndex(List<String> entries) {
+        int count = entries.size();
+        syllables = new String[count][FIELD_COUNT][];
+        fullPinyin = new String[count][FIELD_COUNT];
+        initials = new String[count][FIELD_COUNT];
+        charMasks = new long[count][FIELD_COUNT];
+        for (int i = 0; i < count; i++) {
+            String[] fields = entries.get(i).split("\t", -1);
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                String field = f < fields.length ? fields[f] : "";
+                String[] tokens = field.isEmpty() ? new String[0] : field.split(" ");
+                StringBuilder full = new StringBuilder();
+                StringBuilder first = new StringBuilder();
+                for (String token : tokens) {
+                    full.append(token);
+                    first.append(token.charAt(0));
+                }
+                syllables[i][f] = tokens;
+                fullPinyin[i][f] = full.toString();
+                initials[i][f] = first.toString();
+                charMasks[i][f] = charMask(fullPinyin[i][f]);
+            }
+        }
+    }
+
+    /**
+     * 读取缓存的转写结果，歌单内容变化或没有缓存时重新计算并保存；耗时操作，应在后台线程调用
+     *
+     * @param cacheManager 歌单缓存
+     * @param playlist     歌单
+     */
+    public static PinyinSearchIndex load(PlaylistCacheManager cacheManager, PlaylistData playlist) {
+        List<PlaylistData.Song> songs = playlist != null && playlist.songs != null
+                ? playlist.songs : new ArrayList<>();
+        int playlistId = playlist != null ? playlist.id : 0;
+        String signature = signature(playlistId, songs);
+        List<String> entries = cacheManager != null ? cacheManager.getPinyinIndex(playlistId, signature) : null;
+        if (entries == null || entries.size() != songs.size()) {
+            long startTime = SystemClock.elapsedRealtime();
+            entries = new ArrayList<>(songs.size());
+            for (PlaylistData.Song song : songs) {
+                entries.add(transliterate(song.name) + "\t" + transliterate(song.ar_name) + "\t"
+                        + transliterate(song.al_name));
+            }
+            if (cacheManager != null) {
+                cacheManager.savePinyinIndex(playlistId, signature, entries);
+            }
+            Log.d(TAG, "拼音转写完成: " + songs.size() + " 首, 耗时 " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        }
+        return new PinyinSearchIndex(entries);
+    }
+
+    /**
+     * 是否应按拼音搜索：只含字母（可夹杂数字和空格）的输入
+     */
+    public static boolean isPinyinQuery(String query) {
+        String normalized = normalizeQuery(query);
+        if (normalized.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= 0x80 && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按拼音查询，结果按匹配程度排序：歌名优先于歌手和专辑，从开头匹配优先，精确优先于容错
+     *
+     * @param query 拼音输入
+     * @return 匹配的歌曲下标，输入不是拼音时返回空数组
+     */
+    public int[] search(String query) {
+        if (!isPinyinQuery(query)) {
+            return new int[0];
+        }
+        String q = normalizeQuery(query);
+        long queryMask = charMask(q);
+        int count = syllables.length;
+        int[] scores = new int[count];
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            scores[i] = exactScore(i, q, queryMask);
+            if (scores[i] < Integer.MAX_VALUE) {
+                matched++;
+            }
+        }
+        if (matched < FUZZY_THRESHOLD && q.length() >= MIN_FUZZY_QUERY_LENGTH) {
+            int maxDistance = q.length() <= 6 ? 1 : 2;
+            for (int i = 0; i < count; i++) {
+                if (scores[i] == Integer.MAX_VALUE) {
+                    scores[i] = fuzzyScore(i, q, queryMask, maxDistance);
+                }
+            }
+        }
+
+        List<long[]> ranked = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (scores[i] < Integer.MAX_VALUE) {
+                ranked.add(new long[]{scores[i], i});
+            }
+        }
+        ranked.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        int[] result = new int[ranked.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked.get(i)[1];
+        }
+        return result;
+    }
+
+    /**
+     * 在后台线程按拼音查询；大歌单的容错匹配要逐首计算编辑距离，不应在主线程执行。
+     * 尚未开始的查询被取消时不再执行
+     *
+     * @param query 拼音输入
+     * @return 查询结果，同{@link #search(String)}
+     */
+    public CompletableFuture<int[]> searchAsync(String query) {
+        return CompletableFuture.supplyAsync(() -> search(query), searchExecutor);
+    }
+
+    public int size() {
+        return syllables.length;
+    }
+
+    /**
+     * 精确匹配得分，越小越好；不匹配返回Integer.MAX_VALUE
+     */
+    private int exactScore(int song, String q, long queryMask) {
+        int best = Integer.MAX_VALUE;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            if ((queryMask & ~charMasks[song][f]) != 0) {
+                // 输入中有全拼里没有的字母
+                continue;
+            }
+            String[] tokens = syllables[song][f];
+            for (int start = 0; start < tokens.length; start++) {
+                int partial = matchSyllables(tokens, start, q, 0);
+                if (partial >= 0) {
+                    // 字段权重 > 是否从开头匹配 > 使用缩写的音节数
+                    int score = f * 100 + (start == 0 ? 0 : 50) + Math.min(partial, 49);
+                    best = Math.min(best, score);
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 从第start个音节开始，每个音节匹配输入的一个非空前缀（整个音节或其开头几个字母）
+     *
+     * @return 匹配成功时返回只匹配了部分字母的音节数，失败返回-1
+     */
+    private static int matchSyllables(String[] tokens, int index, String q, int offset) {
+        if (offset == q.length()) {
+            return 0;
+        }
+        if (index >= tokens.length) {
+            return -1;
+        }
+        String token = tokens[index];
+        int maxLength = Math.min(token.length(), q.length() - offset);
+        // 优先整音节匹配，使“qingtian”不会被拆成缩写
+        for (int length = maxLength; length >= 1; length--) {
+            if (!q.regionMatches(offset, token, 0, length)) {
+                continue;
+            }
+            int rest = matchSyllables(tokens, index + 1, q, offset + length);
+            if (rest >= 0) {
+                return rest + (length < token.length() && offset + length < q.length() ? 1 : 0);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 容错匹配得分：输入与全拼或首字母中任一子串的编辑距离不超过maxDistance
+     */
+    private int fuzzyScore(int song, String q, long queryMask, int maxDistance) {
+        int best = Integer.MAX_VALUE;
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            if (Long.bitCount(queryMask & ~charMasks[song][f]) > maxDistance) {
+                // 缺少的字母数已超过允许的编辑距离
+                continue;
+            }
+            int distance = Math.min(substringDistance(q, fullPinyin[song][f], maxDistance),
+                    substringDistance(q, initials[song][f], maxDistance));
+            if (distance <= maxDistance) {
+                best = Math.min(best, 1000 + distance * 100 + f);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 输入与文本中最接近的子串之间的编辑距离（文本任意位置起止不计代价）
+     */
+    private static int substringDistance(String q, String text, int maxDistance) {
+        if (text.isEmpty()) {
+            return q.length();
+        }
+        int[] previous = new int[text.length() + 1];
+        int[] current = new int[text.length() + 1];
+        for (int i = 1; i <= q.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= text.length(); j++) {
+                int cost = q.charAt(i - 1) == text.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return rowMin;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int min = Integer.MAX_VALUE;
+        for (int value : previous) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    /**
+     * 把文本转写为以空格分隔的音节：汉字转为拼音，连续的字母数字作为一个单词，其余字符忽略
+     */
+    static String transliterate(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String pinyin = PinyinTable.get(c);
+            if (pinyin == null && c < 0x80 && Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            appendToken(builder, word);
+            if (pinyin != null) {
+                word.append(pinyin);
+                appendToken(builder, word);
+            }
+        }
+        appendToken(builder, word);
+        return builder.toString();
+    }
+
+    private static void appendToken(StringBuilder builder, StringBuilder word) {
+        if (word.length() == 0) {
+            return;
+        }
+        if (builder.length() > 0) {
+            builder.append(' ');
+        }
+        builder.append(word);
+        word.setLength(0);
+    }
+
+    private static long charMask(String text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if (c >= '0' && c <= '9') {
+                mask |= 1L << (26 + c - '0');
+            }
+        }
+        return mask;
+    }
+
+    private static String normalizeQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        String lower = query.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 歌单内容签名，歌曲或名称变化后缓存的转写结果失效
+     */
+    private static String signature(int playlistId, List<PlaylistData.Song> songs) {
+        long hash = 0xcbf29ce484222325L;
+        for (PlaylistData.Song song : songs) {
+            for (String value : Arrays.asList(song.id, song.name, song.ar_name, song.al_name)) {
+                String text = value != null ? value : "";
+                for (int i = 0; i < text.length(); i++) {
+                    hash ^= text.charAt(i);
+                    hash *= 0x100000001b3L;
+                }
+                hash ^= 0x1f;
+                hash *= 0x100000001b3L;
+            }
+        }
+        return playlistId + "_" + songs.size() + "_" + Long.toHexString(hash);
+    }
+}
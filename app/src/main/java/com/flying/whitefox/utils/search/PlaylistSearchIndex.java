@@ -0,0 +1,356 @@
+package com.flying.whitefox.utils.search;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 歌单内搜索的倒排索引
+ * 对歌名、歌手、专辑分词：字母数字按单词建立前缀索引（只匹配单词开头），中日韩文字按单字和相邻两字建立索引（匹配任意位置）。
+ * 歌单加载后在后台分批构建，构建期间尚未索引的歌曲用顺序扫描补齐，结果始终完整
+ */
+public class PlaylistSearchIndex {
+    private static final String TAG = "PlaylistSearchIndex";
+    private static final int BUILD_CHUNK_SIZE = 256;  // 每批索引的歌曲数，批与批之间让出锁
+    private static final int MAX_PREFIX_LENGTH = 8;   // 单词前缀最长索引长度，更长的查询截断后再校验
+
+    private static final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PlaylistSearchIndex");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final List<PlaylistData.Song> songs;
+    private final String[] searchTexts;             // 规范化后的“歌名 歌手 专辑”，用于最终校验
+    private final Map<String, IntList> postings = new HashMap<>();
+    private int indexedCount = 0;                   // 已建立索引的歌曲数
+    private volatile boolean cancelled = false;
+
+    private PlaylistSearchIndex(List<PlaylistData.Song> songs) {
+        this.songs = songs;
+        this.searchTexts = new String[songs.size()];
+    }
+
+    /**
+     * 在后台构建索引，返回的索引可立即用于查询
+     *
+     * @param songs 歌单歌曲，构建期间不应修改
+     */
+    public static PlaylistSearchIndex build(List<PlaylistData.Song> songs) {
+        PlaylistSearchIndex index = new PlaylistSearchIndex(songs != null ? songs : new ArrayList<>());
+        buildExecutor.execute(index::buildAll);
+        return index;
+    }
+
+    /**
+     * 停止后台构建（歌单已被替换时调用）
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public synchronized boolean isComplete() {
+        return indexedCount == songs.size();
+    }
+
+    /**
+     * 查询匹配的歌曲
+     *
+     * @param query 输入的关键词，多个词之间为“与”关系
+     * @return 匹配的歌曲下标，升序；关键词为空时返回null表示不过滤
+     */
+    public int[] search(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        String[] words = normalized.split(" ");
+        List<String> grams = new ArrayList<>();
+        boolean exact = true;
+        for (String word : words) {
+            int before = grams.size();
+            collectQueryGrams(word, grams);
+            // 单个词条与关键词完全相同时倒排结果即为精确结果，无需逐条校验
+            exact &= grams.size() - before == 1 && grams.get(before).equals(word);
+        }
+
+        synchronized (this) {
+            IntList result = new IntList();
+            if (indexedCount > 0) {
+                int[] candidates = intersect(grams);
+                if (exact && indexedCount == songs.size()) {
+                    return candidates;
+                }
+                for (int i = 0; i < candidates.length; i++) {
+                    if (exact || matches(candidates[i], words)) {
+                        result.add(candidates[i]);
+                    }
+                }
+            }
+            // 尚未索引的部分顺序扫描
+            for (int i = indexedCount; i < songs.size(); i++) {
+                if (matches(i, words)) {
+                    result.add(i);
+                }
+            }
+            return result.toArray();
+        }
+    }
+
+    private void buildAll() {
+        long startTime = SystemClock.elapsedRealtime();
+        int total = songs.size();
+        while (!cancelled) {
+            synchronized (this) {
+                int end = Math.min(indexedCount + BUILD_CHUNK_SIZE, total);
+                for (int i = indexedCount; i < end; i++) {
+                    indexSong(i);
+                }
+                indexedCount = end;
+                if (indexedCount >= total) {
+                    break;
+                }
+            }
+        }
+        if (!cancelled) {
+            Log.d(TAG, "索引构建完成: " + total + " 首, " + postings.size() + " 个词条, 耗时 "
+                    + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        }
+    }
+
+    private void indexSong(int index) {
+        String text = getSearchText(index);
+        List<String> grams = new ArrayList<>();
+        for (String word : text.split(" ")) {
+            collectIndexGrams(word, grams);
+        }
+        for (String gram : grams) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                list = new IntList();
+                postings.put(gram, list);
+            }
+            // 同一首歌的重复词条只记录一次，下标递增保证列表有序
+            if (list.size == 0 || list.data[list.size - 1] != index) {
+                list.add(index);
+            }
+        }
+    }
+
+    private String getSearchText(int index) {
+        String text = searchTexts[index];
+        if (text == null) {
+            PlaylistData.Song song = songs.get(index);
+            text = normalize(nullToEmpty(song.name) + " " + nullToEmpty(song.ar_name) + " " + nullToEmpty(song.al_name));
+            searchTexts[index] = text;
+        }
+        return text;
+    }
+
+    private boolean matches(int index, String[] words) {
+        String text = getSearchText(index);
+        for (String word : words) {
+            if (!containsAtWordStart(text, word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与索引规则一致的校验：以字母数字开头的关键词必须出现在单词开头，以中日韩文字开头的可在任意位置
+     */
+    private static boolean containsAtWordStart(String text, String word) {
+        boolean cjkStart = isCjk(word.charAt(0));
+        int from = 0;
+        int position;
+        while ((position = text.indexOf(word, from)) >= 0) {
+            if (cjkStart || position == 0) {
+                return true;
+            }
+            char previous = text.charAt(position - 1);
+            if (previous == ' ' || isCjk(previous)) {
+                return true;
+            }
+            from = position + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 交集：从最短的倒排列表开始逐个过滤；任一词条不存在时结果为空
+     */
+    private int[] intersect(List<String> grams) {
+        if (grams.isEmpty()) {
+            return new int[0];
+        }
+        IntList[] lists = new IntList[grams.size()];
+        for (int i = 0; i < grams.size(); i++) {
+            lists[i] = postings.get(grams.get(i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists[0].data, lists[0].size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.length && resultSize > 0; l++) {
+            IntList list = lists[l];
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < resultSize; i++) {
+                int value = result[i];
+                j = lowerBound(list.data, j, list.size, value);
+                if (j < list.size && list.data[j] == value) {
+                    result[kept++] = value;
+                }
+            }
+            resultSize = kept;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    private static int lowerBound(int[] data, int from, int to, int value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 建索引时的词条：字母数字单词的所有前缀，中日韩文字的单字和相邻两字
+     */
+    private static void collectIndexGrams(String word, List<String> grams) {
+        int i = 0;
+        while (i < word.length()) {
+            char c = word.charAt(i);
+            if (isCjk(c)) {
+                grams.add(String.valueOf(c));
+                if (i + 1 < word.length() && isCjk(word.charAt(i + 1))) {
+                    grams.add(word.substring(i, i + 2));
+                }
+                i++;
+            } else {
+                int end = i;
+                while (end < word.length() && !isCjk(word.charAt(end))) {
+                    end++;
+                }
+                int limit = Math.min(end, i + MAX_PREFIX_LENGTH);
+                for (int j = i + 1; j <= limit; j++) {
+                    grams.add(word.substring(i, j));
+                }
+                i = end;
+            }
+        }
+    }
+
+    /**
+     * 查询时的词条：字母数字部分取（截断后的）整段作前缀，中日韩部分取相邻两字，单字时取单字
+     */
+    private static void collectQueryGrams(String word, List<String> grams) {
+        int i = 0;
+        while (i < word.length()) {
+            char c = word.charAt(i);
+            if (isCjk(c)) {
+                int end = i;
+                while (end < word.length() && isCjk(word.charAt(end))) {
+                    end++;
+                }
+                if (end - i == 1) {
+                    grams.add(String.valueOf(c));
+                } else {
+                    for (int j = i; j + 2 <= end; j++) {
+                        grams.add(word.substring(j, j + 2));
+                    }
+                }
+                i = end;
+            } else {
+                int end = i;
+                while (end < word.length() && !isCjk(word.charAt(end))) {
+                    end++;
+                }
+                grams.add(word.substring(i, Math.min(end, i + MAX_PREFIX_LENGTH)));
+                i = end;
+            }
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+
+    /**
+     * 规范化：全角转半角、转小写、标点视为分隔符
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(normalized.length());
+        boolean lastSpace = true;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(c);
+                lastSpace = false;
+            } else if (!lastSpace) {
+                builder.append(' ');
+                lastSpace = true;
+            }
+        }
+        int length = builder.length();
+        if (length > 0 && builder.charAt(length - 1) == ' ') {
+            builder.setLength(length - 1);
+        }
+        return builder.toString();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * 可增长的int数组，避免装箱
+     */
+    private static class IntList {
+        int[] data = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
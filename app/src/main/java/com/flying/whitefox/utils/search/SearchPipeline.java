@@ -0,0 +1,266 @@
+package com.flying.whitefox.utils.search;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+import com.flying.whitefox.data.model.music.SearchPage;
+import com.flying.whitefox.service.MusicService;
+import com.flying.whitefox.utils.network.DataSaverManager;
+import com.flying.whitefox.utils.network.RequestRegistry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 边输入边搜索
+ * 输入防抖后才发起请求，新的关键词会取消仍在进行的旧搜索；结果按规范化后的关键词和页码做LRU缓存，
+ * 支持按页游标加载更多，并在展示一页后预取下一页
+ */
+public class SearchPipeline {
+    private static final String TAG = "SearchPipeline";
+    private static final long DEBOUNCE_DELAY = 300;  // 输入停止300毫秒后才搜索
+    private static final int MAX_CACHED_PAGES = 50;
+
+    /**
+     * 搜索结果回调，在主线程执行
+     */
+    public interface OnSearchResultListener {
+        /**
+         * @param keyword 关键词
+         * @param songs   本次新增的结果
+         * @param hasMore 是否还有下一页
+         * @param append  是否为加载更多（追加到已有结果之后）
+         */
+        void onResults(String keyword, List<PlaylistData.Song> songs, boolean hasMore, boolean append);
+
+        void onError(String keyword);
+    }
+
+    private final MusicService musicService;
+    private final int pageSize;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private OnSearchResultListener listener;
+
+    // 规范化关键词#页码 -> 结果，按访问顺序淘汰
+    private final LinkedHashMap<String, SearchPage> cache = new LinkedHashMap<String, SearchPage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SearchPage> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // 进行中的请求，预取和正式加载同一页时共享
+    private final Map<String, CompletableFuture<SearchPage>> inFlight = new HashMap<>();
+
+    private String currentQuery = "";   // 规范化后的当前关键词
+    private String currentKeyword = ""; // 用户输入的原始关键词
+    private int nextPage = -1;          // 下一页游标，-1表示没有更多
+    private boolean loadingMore = false;
+    private int generation = 0;         // 每次关键词变化加一，丢弃过期结果
+    private Runnable pendingSearch;
+
+    public SearchPipeline(MusicService musicService) {
+        this(musicService, MusicService.DEFAULT_SEARCH_PAGE_SIZE);
+    }
+
+    public SearchPipeline(MusicService musicService, int pageSize) {
+        this.musicService = musicService;
+        this.pageSize = pageSize;
+    }
+
+    public void setOnSearchResultListener(OnSearchResultListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 输入变化时调用，防抖后搜索第一页
+     *
+     * @param keyword 输入框中的关键词
+     */
+    public void onQueryChanged(String keyword) {
+        String query = normalize(keyword);
+        synchronized (this) {
+            if (query.equals(currentQuery)) {
+                // 规范化后没有变化（如只多了空格），保留已排队的搜索
+                return;
+            }
+            currentQuery = query;
+            currentKeyword = keyword.trim();
+            nextPage = -1;
+            loadingMore = false;
+            generation++;
+        }
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        // 旧关键词的搜索（包括预取）已无意义
+        musicService.cancelRequests(RequestRegistry.RequestGroup.SEARCH);
+        if (query.isEmpty()) {
+            return;
+        }
+
+        SearchPage cached = getCached(query, 1);
+        if (cached != null) {
+            // 命中缓存无需防抖
+            deliver(query, cached, false);
+            return;
+        }
+        pendingSearch = () -> {
+            pendingSearch = null;
+            loadPage(query, 1, false);
+        };
+        mainHandler.postDelayed(pendingSearch, DEBOUNCE_DELAY);
+    }
+
+    /**
+     * 立即搜索（如点击搜索按钮），跳过防抖；关键词未变且仍在防抖中时立即执行已排队的搜索
+     */
+    public void searchNow(String keyword) {
+        onQueryChanged(keyword);
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            Runnable search = pendingSearch;
+            pendingSearch = null;
+            search.run();
+        }
+    }
+
+    /**
+     * 加载当前关键词的下一页
+     *
+     * @return 是否发起了加载
+     */
+    public boolean loadMore() {
+        String query;
+        int page;
+        synchronized (this) {
+            if (loadingMore || nextPage < 0 || currentQuery.isEmpty()) {
+                return false;
+            }
+            loadingMore = true;
+            query = currentQuery;
+            page = nextPage;
+        }
+        loadPage(query, page, true);
+        return true;
+    }
+
+    public synchronized boolean hasMore() {
+        return nextPage > 0;
+    }
+
+    /**
+     * 取消进行中的搜索和防抖
+     */
+    public void cancel() {
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        synchronized (this) {
+            generation++;
+            loadingMore = false;
+        }
+        musicService.cancelRequests(RequestRegistry.RequestGroup.SEARCH);
+    }
+
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    private void loadPage(String query, int page, boolean append) {
+        int requestGeneration;
+        synchronized (this) {
+            requestGeneration = generation;
+        }
+        fetch(query, page).whenComplete((result, throwable) -> mainHandler.post(() -> {
+            synchronized (this) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                if (append) {
+                    loadingMore = false;
+                }
+            }
+            if (result == null) {
+                Log.w(TAG, "搜索失败: " + query + " 第" + page + "页");
+                if (listener != null) {
+                    listener.onError(currentKeyword);
+                }
+                return;
+            }
+            deliver(query, result, append);
+        }));
+    }
+
+    /**
+     * 获取一页结果：先查缓存，再复用进行中的请求，最后才发起网络请求
+     */
+    private CompletableFuture<SearchPage> fetch(String query, int page) {
+        String key = cacheKey(query, page);
+        synchronized (this) {
+            SearchPage cached = cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            CompletableFuture<SearchPage> existing = inFlight.get(key);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        CompletableFuture<SearchPage> future = musicService.searchSong(query, page, pageSize);
+        synchronized (this) {
+            inFlight.put(key, future);
+        }
+        future.whenComplete((result, throwable) -> {
+            synchronized (this) {
+                inFlight.remove(key);
+                if (result != null) {
+                    cache.put(key, result);
+                }
+            }
+        });
+        return future;
+    }
+
+    private void deliver(String query, SearchPage result, boolean append) {
+        synchronized (this) {
+            nextPage = result.getNextPage();
+        }
+        if (listener != null) {
+            List<PlaylistData.Song> songs = result.songs != null ? result.songs : new ArrayList<>();
+            listener.onResults(currentKeyword, songs, result.hasMore(), append);
+        }
+        // 预取下一页，加载更多时可直接从缓存返回
+        if (result.hasMore() && DataSaverManager.getInstance().isPrefetchAllowed()) {
+            fetch(query, result.getNextPage());
+        }
+    }
+
+    private synchronized SearchPage getCached(String query, int page) {
+        return cache.get(cacheKey(query, page));
+    }
+
+    private static String cacheKey(String query, int page) {
+        return query + "#" + page;
+    }
+
+    /**
+     * 规范化关键词：全角转半角、合并空白、转小写，使等价输入共享缓存
+     */
+    static String normalize(String keyword) {
+        if (keyword == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(keyword, Normalizer.Form.NFKC);
+        return normalized.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,176 @@
+package com.flying.whitefox.utils.cache;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 歌单缓存编码：两种布局的往返一致性，以及损坏数据的处理
+ */
+public class PlaylistCodecTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void smallPlaylist_roundTripsThroughCompactLayout() throws IOException {
+        PlaylistData playlist = createPlaylist(12, 3);
+        playlist.songs.get(1).al_name = null;
+        playlist.songs.get(2).pic = null;
+        File file = folder.newFile("3.bin");
+
+        PlaylistCodec.write(file, playlist);
+        PlaylistData decoded = PlaylistCodec.read(file);
+
+        assertFalse(decoded.songs instanceof MappedSongList);
+        assertSamePlaylist(playlist, decoded);
+    }
+
+    @Test
+    public void encodeAndDecode_roundTripInMemory() throws IOException {
+        PlaylistData playlist = createPlaylist(5, 7);
+
+        PlaylistData decoded = PlaylistCodec.decode(PlaylistCodec.encode(playlist));
+
+        assertSamePlaylist(playlist, decoded);
+    }
+
+    @Test
+    public void largePlaylist_roundTripsThroughMappedLayout() throws IOException {
+        PlaylistData playlist = createPlaylist(PlaylistCodec.MAPPED_THRESHOLD + 10, 9);
+        playlist.songs.get(100).name = null;
+        playlist.songs.get(200).ar_name = "";
+        File file = folder.newFile("9.bin");
+
+        PlaylistCodec.write(file, playlist);
+        PlaylistData decoded = PlaylistCodec.read(file);
+
+        assertTrue(decoded.songs instanceof MappedSongList);
+        assertSamePlaylist(playlist, decoded);
+    }
+
+    @Test
+    public void emptyPlaylist_roundTrips() throws IOException {
+        PlaylistData playlist = createPlaylist(0, 1);
+        File file = folder.newFile("1.bin");
+
+        PlaylistCodec.write(file, playlist);
+
+        assertSamePlaylist(playlist, PlaylistCodec.read(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongMagic_throwsIOException() throws IOException {
+        PlaylistCodec.decode(ByteBuffer.wrap("not a playlist cache".getBytes()));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedCompactFile_throwsIOException() throws IOException {
+        File file = folder.newFile("4.bin");
+        PlaylistCodec.write(file, createPlaylist(50, 4));
+        truncate(file, file.length() / 2);
+
+        PlaylistCodec.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedMappedFile_throwsIOException() throws IOException {
+        File file = folder.newFile("5.bin");
+        PlaylistCodec.write(file, createPlaylist(PlaylistCodec.MAPPED_THRESHOLD, 5));
+        truncate(file, file.length() / 2);
+
+        PlaylistCodec.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedCompressedData_throwsIOException() throws IOException {
+        ByteBuffer encoded = PlaylistCodec.encode(createPlaylist(50, 6));
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        for (int i = bytes.length / 2; i < bytes.length; i++) {
+            bytes[i] = (byte) 0xFF;
+        }
+
+        PlaylistCodec.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void mappedFileWithBadNameReference_throwsIOException() throws IOException {
+        File file = folder.newFile("7.bin");
+        PlaylistCodec.write(file, createPlaylist(PlaylistCodec.MAPPED_THRESHOLD, 7));
+        overwriteInt(file, 12, Integer.MAX_VALUE);
+
+        PlaylistCodec.read(file);
+    }
+
+    @Test
+    public void mappedFileWithBadRowReference_decodesMissingField() throws IOException {
+        PlaylistData playlist = createPlaylist(PlaylistCodec.MAPPED_THRESHOLD, 8);
+        File file = folder.newFile("8.bin");
+        PlaylistCodec.write(file, playlist);
+        // 第2首歌的歌名引用（记录从文件头之后开始，每个字段4字节）
+        overwriteInt(file, PlaylistCodec.MAPPED_HEADER_SIZE + PlaylistCodec.SONG_FIELD_COUNT * 4 + 4, -5);
+
+        PlaylistData decoded = PlaylistCodec.read(file);
+
+        assertNull(decoded.songs.get(1).name);
+        assertEquals(playlist.songs.get(1).id, decoded.songs.get(1).id);
+        assertEquals(playlist.songs.get(2).name, decoded.songs.get(2).name);
+    }
+
+    private static PlaylistData createPlaylist(int songCount, int id) {
+        PlaylistData playlist = new PlaylistData();
+        playlist.id = id;
+        playlist.name = "歌单" + id;
+        List<PlaylistData.Song> songs = new ArrayList<>();
+        for (int i = 0; i < songCount; i++) {
+            PlaylistData.Song song = new PlaylistData.Song();
+            song.id = String.valueOf(100000 + i);
+            song.name = "歌曲 " + i;
+            song.ar_name = "歌手" + (i % 17);     // 重复的字符串共用字符串表
+            song.al_name = "Album " + (i % 31);
+            song.pic = "https://example.com/pic/" + (i % 31) + ".jpg";
+            songs.add(song);
+        }
+        playlist.songs = songs;
+        return playlist;
+    }
+
+    private static void assertSamePlaylist(PlaylistData expected, PlaylistData actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.songs.size(), actual.songs.size());
+        for (int i = 0; i < expected.songs.size(); i++) {
+            PlaylistData.Song expectedSong = expected.songs.get(i);
+            PlaylistData.Song actualSong = actual.songs.get(i);
+            assertEquals(expectedSong.id, actualSong.id);
+            assertEquals(expectedSong.name, actualSong.name);
+            assertEquals(expectedSong.ar_name, actualSong.ar_name);
+            assertEquals(expectedSong.al_name, actualSong.al_name);
+            assertEquals(expectedSong.pic, actualSong.pic);
+        }
+    }
+
+    private static void overwriteInt(File file, long position, int value) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(position);
+            output.writeInt(value);
+        }
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.flying.whitefox.utils.lyric;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * LRC解析：时间标签格式、一行多标签、偏移与译文合并
+ */
+public class LyricParserTest {
+
+    @Test
+    public void parseTimestamp_supportedFormats() {
+        assertEquals(72000, LyricParser.parseTimestamp("01:12"));
+        assertEquals(72300, LyricParser.parseTimestamp("01:12.30"));
+        assertEquals(72345, LyricParser.parseTimestamp("01:12.345"));
+        assertEquals(72300, LyricParser.parseTimestamp("01:12:30"));
+        assertEquals(72500, LyricParser.parseTimestamp("01:12.5"));
+        assertEquals(6000000, LyricParser.parseTimestamp("100:00"));
+    }
+
+    @Test
+    public void parseTimestamp_rejectsNonTimestamps() {
+        assertEquals(-1, LyricParser.parseTimestamp("ar:周杰伦"));
+        assertEquals(-1, LyricParser.parseTimestamp("offset:500"));
+        assertEquals(-1, LyricParser.parseTimestamp("01:60"));
+        assertEquals(-1, LyricParser.parseTimestamp("01:12."));
+        assertEquals(-1, LyricParser.parseTimestamp("01:12.30x"));
+        assertEquals(-1, LyricParser.parseTimestamp(":12"));
+        assertEquals(-1, LyricParser.parseTimestamp(""));
+    }
+
+    @Test
+    public void compile_sortsLinesAndExpandsMultipleTags() {
+        String lrc = "[ti:晴天]\n"
+                + "[00:20.00][01:20.00]副歌\n"
+                + "[00:10.00]第一句\n"
+                + "not a lyric line\n"
+                + "[00:15.00][注释]正文里的方括号\n";
+
+        Lyrics lyrics = LyricParser.compile(lrc, null);
+
+        assertEquals(4, lyrics.size());
+        assertFalse(lyrics.hasTranslation());
+        assertEquals(10000, lyrics.getTime(0));
+        assertEquals("第一句", lyrics.getLine(0));
+        assertEquals("[注释]正文里的方括号", lyrics.getLine(1));
+        assertEquals("副歌", lyrics.getLine(2));
+        assertEquals(80000, lyrics.getTime(3));
+        assertEquals("副歌", lyrics.getLine(3));
+    }
+
+    @Test
+    public void compile_withoutTimedLines_returnsEmpty() {
+        assertSame(Lyrics.EMPTY, LyricParser.compile("[ar:someone]\n纯文本歌词", null));
+        assertSame(Lyrics.EMPTY, LyricParser.compile(null, "[00:01.00]译文"));
+    }
+
+    @Test
+    public void compile_mergesTranslationWithinTolerance() {
+        String lrc = "[00:01.00]Hello\n[00:05.00]World\n[00:09.00]\n[00:12.00]Again";
+        String tlyric = "[00:01.05]你好\n[00:05.20]世界\n[00:09.00]空行译文\n[00:12.00]";
+
+        Lyrics lyrics = LyricParser.compile(lrc, tlyric);
+
+        assertTrue(lyrics.hasTranslation());
+        assertEquals("你好", lyrics.getTranslation(0));
+        // 时间戳相差200毫秒，超出容差
+        assertNull(lyrics.getTranslation(1));
+        // 原文空行不挂译文
+        assertNull(lyrics.getTranslation(2));
+        // 空译文忽略
+        assertNull(lyrics.getTranslation(3));
+    }
+
+    @Test
+    public void compile_appliesOffsetAfterMergingTranslation() {
+        String lrc = "[offset:500]\n[00:00.30]开头\n[00:10.00]第二句";
+        String tlyric = "[00:10.00]second line";
+
+        Lyrics lyrics = LyricParser.compile(lrc, tlyric);
+
+        // 正偏移使歌词提前显示，不小于0
+        assertEquals(0, lyrics.getTime(0));
+        assertEquals(9500, lyrics.getTime(1));
+        // 译文按偏移前的时间戳匹配
+        assertEquals("second line", lyrics.getTranslation(1));
+    }
+
+    @Test
+    public void indexAt_returnsLastLineNotAfterPosition() {
+        Lyrics lyrics = LyricParser.compile("[00:01.00]a\n[00:02.00]b\n[00:03.00]c", null);
+
+        assertEquals(-1, lyrics.indexAt(999));
+        assertEquals(0, lyrics.indexAt(1000));
+        assertEquals(0, lyrics.indexAt(1999));
+        assertEquals(1, lyrics.indexAt(2000));
+        assertEquals(2, lyrics.indexAt(60000));
+        assertEquals(-1, Lyrics.EMPTY.indexAt(1000));
+    }
+}
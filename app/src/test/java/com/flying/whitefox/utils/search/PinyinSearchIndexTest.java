@@ -0,0 +1,87 @@
+package com.flying.whitefox.utils.search;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 拼音搜索：全拼、首字母、混合输入、排序与容错
+ */
+public class PinyinSearchIndexTest {
+
+    @Test
+    public void pinyinQuery_matchesFullSyllablesAndInitials() {
+        PinyinSearchIndex index = PinyinSearchIndex.load(null, createPlaylist());
+
+        assertEquals(0, index.search("qingtian")[0]);
+        assertArrayEquals(new int[]{2}, index.search("qlx"));
+        assertArrayEquals(new int[]{0, 2, 4}, index.search("zjl"));
+        assertArrayEquals(new int[]{0, 2, 4}, index.search("zhoujl"));
+    }
+
+    @Test
+    public void pinyinQuery_ranksNameBeforeArtist() {
+        PinyinSearchIndex index = PinyinSearchIndex.load(null, createPlaylist());
+
+        // 七里香既是歌名也是专辑名；稻香只在歌名中间匹配
+        int[] result = index.search("xiang");
+        assertTrue(result.length >= 2);
+        assertEquals(2, result[0]);
+        assertEquals(4, result[1]);
+    }
+
+    @Test
+    public void pinyinQuery_toleratesTypos() {
+        PinyinSearchIndex index = PinyinSearchIndex.load(null, createPlaylist());
+
+        int[] result = index.search("qingtain");
+        assertTrue(result.length > 0);
+        assertEquals(0, result[0]);
+    }
+
+    @Test
+    public void nonPinyinQuery_returnsEmpty() {
+        PinyinSearchIndex index = PinyinSearchIndex.load(null, createPlaylist());
+
+        assertFalse(PinyinSearchIndex.isPinyinQuery("周"));
+        assertFalse(PinyinSearchIndex.isPinyinQuery(" "));
+        assertArrayEquals(new int[0], index.search("周"));
+    }
+
+    @Test
+    public void searchAsync_matchesSynchronousSearch() throws Exception {
+        PinyinSearchIndex index = PinyinSearchIndex.load(null, createPlaylist());
+
+        assertArrayEquals(index.search("zjl"), index.searchAsync("zjl").get(5, TimeUnit.SECONDS));
+        assertArrayEquals(index.search("qingtain"), index.searchAsync("qingtain").get(5, TimeUnit.SECONDS));
+    }
+
+    private static PlaylistData createPlaylist() {
+        List<PlaylistData.Song> songs = new ArrayList<>();
+        songs.add(createSong("晴天", "周杰伦", "叶惠美"));
+        songs.add(createSong("Hello World", "Adele", "25"));
+        songs.add(createSong("七里香", "周杰伦", "七里香"));
+        songs.add(createSong("Yellow", "Coldplay", "Parachutes"));
+        songs.add(createSong("稻香", "周杰伦", "魔杰座"));
+        PlaylistData playlist = new PlaylistData();
+        playlist.id = 1;
+        playlist.name = "测试歌单";
+        playlist.songs = songs;
+        return playlist;
+    }
+
+    private static PlaylistData.Song createSong(String name, String artist, String album) {
+        PlaylistData.Song song = new PlaylistData.Song();
+        song.id = String.valueOf(name.hashCode());
+        song.name = name;
+        song.ar_name = artist;
+        song.al_name = album;
+        return song;
+    }
+}
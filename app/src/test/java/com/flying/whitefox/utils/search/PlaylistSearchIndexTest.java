@@ -0,0 +1,96 @@
+package com.flying.whitefox.utils.search;
+
+import com.flying.whitefox.data.model.music.PlaylistData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 歌单内文字搜索：分词规则、规范化与构建过程中的查询
+ */
+public class PlaylistSearchIndexTest {
+
+    @Test
+    public void emptyQuery_returnsNull() {
+        PlaylistSearchIndex index = PlaylistSearchIndex.build(createSongs());
+
+        assertNull(index.search(""));
+        assertNull(index.search("  ,. "));
+    }
+
+    @Test
+    public void cjkQuery_matchesAnyPosition() {
+        PlaylistSearchIndex index = PlaylistSearchIndex.build(createSongs());
+
+        assertArrayEquals(new int[]{0, 2, 4}, index.search("周杰伦"));
+        assertArrayEquals(new int[]{2}, index.search("里香"));
+        assertArrayEquals(new int[]{2, 4}, index.search("香"));
+    }
+
+    @Test
+    public void latinQuery_matchesWordStartOnly() {
+        PlaylistSearchIndex index = PlaylistSearchIndex.build(createSongs());
+
+        assertArrayEquals(new int[]{1}, index.search("hel"));
+        assertArrayEquals(new int[]{1}, index.search("WORLD"));
+        assertArrayEquals(new int[0], index.search("ello"));
+        assertArrayEquals(new int[0], index.search("low"));
+    }
+
+    @Test
+    public void fullWidthAndPunctuation_areNormalized() {
+        PlaylistSearchIndex index = PlaylistSearchIndex.build(createSongs());
+
+        assertArrayEquals(new int[]{1}, index.search("ＨＥＬＬＯ"));
+        assertArrayEquals(new int[]{3}, index.search("yellow, coldplay"));
+    }
+
+    @Test
+    public void multipleWords_areIntersected() {
+        PlaylistSearchIndex index = PlaylistSearchIndex.build(createSongs());
+
+        assertArrayEquals(new int[]{4}, index.search("周杰伦 稻"));
+        assertArrayEquals(new int[0], index.search("周杰伦 adele"));
+    }
+
+    @Test
+    public void resultsDoNotDependOnBuildProgress() throws InterruptedException {
+        List<PlaylistData.Song> songs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            songs.add(createSong("Song " + i, i % 10 == 0 ? "周杰伦" : "Artist " + i, "Album"));
+        }
+        PlaylistSearchIndex index = PlaylistSearchIndex.build(songs);
+        int[] early = index.search("周杰伦");
+        for (int i = 0; i < 500 && !index.isComplete(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(index.isComplete());
+        assertEquals(200, early.length);
+        assertArrayEquals(early, index.search("周杰伦"));
+        assertArrayEquals(new int[]{1999}, index.search("song 1999"));
+    }
+
+    private static List<PlaylistData.Song> createSongs() {
+        List<PlaylistData.Song> songs = new ArrayList<>();
+        songs.add(createSong("晴天", "周杰伦", "叶惠美"));
+        songs.add(createSong("Hello World", "Adele", "25"));
+        songs.add(createSong("七里香", "周杰伦", "七里香"));
+        songs.add(createSong("Yellow", "Coldplay", "Parachutes"));
+        songs.add(createSong("稻香", "周杰伦", "魔杰座"));
+        return songs;
+    }
+
+    private static PlaylistData.Song createSong(String name, String artist, String album) {
+        PlaylistData.Song song = new PlaylistData.Song();
+        song.id = String.valueOf(name.hashCode());
+        song.name = name;
+        song.ar_name = artist;
+        song.al_name = album;
+        return song;
+    }
+}